@@ -1,7 +1,5 @@
 package music;
 
-import exceptions.Empty;
-
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -18,6 +16,10 @@ public class Document {
     private final List<Measure> measures;
     private final HashMap<String, String> metadata;
     private int[] intervalRep;
+    /**
+     * The measure index of each note and chord, worked out alongside {@code intervalRep}
+     */
+    private int[] measureMap;
 
     public Document(List<Measure> measures, HashMap<String, String> metadataFromInFile) {
         this.measures = measures;
@@ -25,6 +27,21 @@ public class Document {
         getIntervalsFromMeasures();
     }
 
+    /**
+     * Makes a document whose intervals and measure map were already worked out, as a streaming parser does without
+     * ever holding the measures. Such a document has no {@link Measure Measures}.
+     *
+     * @param intervalRep the interval representation of the piece
+     * @param measureMap  the measure index of each note and chord, as {@link #getMeasureMap()} returns
+     * @param metadata    the metadata of the piece
+     */
+    public Document(int[] intervalRep, int[] measureMap, HashMap<String, String> metadata) {
+        this.measures = new ArrayList<>();
+        this.metadata = metadata;
+        this.intervalRep = intervalRep;
+        this.measureMap = measureMap;
+    }
+
     /**
      * Outputs the respective interval for this 'document', or piece of music.
      *
@@ -38,61 +55,32 @@ public class Document {
     }
 
     /**
-     * Computes and populates the {@code intervalRep} array with interval values derived from adjacent pairs
-     * of {@link Measure} objects in the {@code measures} list. Each measure computes its interval
-     * relative to the next one in sequence, or {@code null} if it is the last measure.
+     * Computes and populates the {@code intervalRep} and {@code measureMap} arrays from the {@code measures} list, in one pass
+     * with an {@link IntervalBuilder}. Each measure computes its intervals relative to the next one in sequence, or to nothing
+     * if it is the last measure.
      *
-     * @see Measure#getMeasureInterval(Measure)
+     * @see IntervalBuilder
      */
     public void getIntervalsFromMeasures() {
-        List<Integer> intervalList = new ArrayList<>();
-
-        for (int i = 0; i < measures.size(); i++) {
-            try {
-                Measure current = measures.get(i);
-                Measure next = (i < measures.size() - 1) ? measures.get(i + 1) : null;
-                int[] intervals = current.getMeasureInterval(next);
-
-                for (int interval : intervals) {
-                    intervalList.add(interval);
-                }
-            } catch (Empty ex) {
-                continue;
-            }
+        IntervalBuilder builder = new IntervalBuilder();
+        for (Measure measure : measures) {
+            builder.addMeasure(measure);
         }
+        builder.finish();
 
-        intervalRep = new int[intervalList.size()];
-        for (int i = 0; i < intervalList.size(); i++) {
-            intervalRep[i] = intervalList.get(i);
-        }
+        intervalRep = builder.getIntervals();
+        measureMap = builder.getMeasureMap();
     }
 
     /**
-     * Generates a mapping from each musical note or chord to the index of its containing measure.
-     * Only objects of type {@link Note} or {@link Chord} are considered.
+     * Gives the mapping from each musical note or chord to the index of its containing measure.
      *
      * @return an array of measure indices corresponding to the order of {@link Note} and {@link Chord} instances in {@code measures}
      * @see Note
      * @see Chord
      */
     public int[] getMeasureMap() {
-        List<Integer> measureIndices = new ArrayList<>();
-
-        for (int i = 0; i < measures.size(); i++) {
-            List<Object> noteObjects = measures.get(i).getNoteRep();
-            for (Object obj : noteObjects) {
-                if (obj.getClass() == Note.class || obj.getClass() == Chord.class) {
-                    measureIndices.add(i);
-                }
-            }
-        }
-
-        int[] map = new int[measureIndices.size()];
-        for (int i = 0; i < measureIndices.size(); i++) {
-            map[i] = measureIndices.get(i);
-        }
-
-        return map;
+        return measureMap;
     }
 
     public int[] getIntervalRep() {
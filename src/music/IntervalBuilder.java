@@ -0,0 +1,90 @@
+package music;
+
+import java.util.Arrays;
+
+/**
+ * This class builds the interval representation and measure map of a piece in one pass over its {@link Measure Measures}, as
+ * they are given to it in order. Both go straight into growable primitive buffers, and only the measure before the current one
+ * is held, so a streaming parser can feed it measures as it finds them.
+ * <p>
+ * Each measure gives the intervals between its notes, with its key signature applied, and then the interval from its last note
+ * to the first note of the next measure, without the key signature. A measure with no notes gives no intervals, and neither
+ * does the measure before it, as it has nothing to link to. Every note and chord adds its measure's index to the measure map,
+ * and measures with no notes still count towards the index.
+ * </p>
+ */
+public class IntervalBuilder {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int[] intervals = new int[INITIAL_CAPACITY];
+    private int intervalCount;
+    private int[] measureMap = new int[INITIAL_CAPACITY];
+    private int noteCount;
+    /**
+     * The last measure added, whose intervals wait on the next one
+     */
+    private Measure previous;
+    private int measureIndex;
+
+    /**
+     * Adds the next measure of the piece
+     *
+     * @param measure the measure, after every one added before it
+     */
+    public void addMeasure(Measure measure) {
+        if (previous != null) appendIntervals(previous, measure);
+
+        int size = measure.size();
+        ensureMeasureMapCapacity(noteCount + size);
+        Arrays.fill(measureMap, noteCount, noteCount + size, measureIndex);
+        noteCount += size;
+        measureIndex++;
+        previous = measure;
+    }
+
+    /**
+     * Adds the intervals of the last measure, which has no next measure to link to. Call this once every measure is added.
+     */
+    public void finish() {
+        if (previous != null) appendIntervals(previous, null);
+        previous = null;
+    }
+
+    /**
+     * @return the intervals so far, as a new array
+     */
+    public int[] getIntervals() {
+        return Arrays.copyOf(intervals, intervalCount);
+    }
+
+    /**
+     * @return the measure map so far, as a new array
+     */
+    public int[] getMeasureMap() {
+        return Arrays.copyOf(measureMap, noteCount);
+    }
+
+    /**
+     * Appends a measure's intervals, including the link to {@code next} if given
+     */
+    private void appendIntervals(Measure measure, Measure next) {
+        long[] notes = measure.getNotes();
+        if (measure.isEmpty() || (next != null && next.isEmpty())) return;
+
+        ensureIntervalCapacity(intervalCount + notes.length);
+        for (int i = 1; i < notes.length; i++) {
+            intervals[intervalCount++] = PackedNote.keyedIntVal(notes[i]) - PackedNote.keyedIntVal(notes[i - 1]);
+        }
+        if (next != null) {
+            intervals[intervalCount++] = PackedNote.rawIntVal(next.getNotes()[0]) - PackedNote.rawIntVal(notes[notes.length - 1]);
+        }
+    }
+
+    private void ensureIntervalCapacity(int capacity) {
+        if (capacity > intervals.length) intervals = Arrays.copyOf(intervals, Math.max(capacity, intervals.length * 2));
+    }
+
+    private void ensureMeasureMapCapacity(int capacity) {
+        if (capacity > measureMap.length) measureMap = Arrays.copyOf(measureMap, Math.max(capacity, measureMap.length * 2));
+    }
+}
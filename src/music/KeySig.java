@@ -1,28 +1,66 @@
 package music;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
  * This class represents the KeySignatures in music. It has a majSig enum and a minSig enum, representing both Major and
- * Minor keys. It has a map of 'keyed pitches' that translate the C major pitches to the pitches of the proper key. Its
+ * Minor keys. It has a table of 'keyed pitches' that translate the C major pitches to the pitches of the proper key. Its
  * internal keySig is a major, but it can return the relative minor if requested.
+ * <p>
+ * KeySigs are immutable, and there are only fifteen standard ones, so {@link #of(String)} hands out shared instances
+ * rather than building a new table for every key signature element.
+ * </p>
  */
 public class KeySig {
 
     /**
-     * Has every pitch, and its corresponding 'keyed pitch', i.e. the key of C maj will translate this map to <pitch, pitch> for every pitch.
-     * However, the key of F maj will be the same except for the pitch B, i.e. <B, Bf>. TODO perhaps make this so it is just the accidental instead of the note, i.e. 'null' or 's' or 'x' corresponding to each pitch.
+     * The pitches, in table order. A pitch's slot in every table here is its letter minus 'A'.
      */
-    public Map<String, String> keyedPitches;
+    private static final String[] PITCHES = {"A", "B", "C", "D", "E", "F", "G"};
     /**
-     * Our major key signature for this particular instance of the key
+     * The order sharps are added to a key signature, as slots in the tables
      */
-    private majSig sig = null;
+    private static final int[] SHARP_ORDER = {5, 2, 6, 3, 0, 4, 1}; // F C G D A E B
+    /**
+     * The order flats are added to a key signature, as slots in the tables
+     */
+    private static final int[] FLAT_ORDER = {1, 4, 0, 3, 6, 2, 5}; // B E A D G C F
+    /**
+     * One shared instance per major key, by {@link majSig} ordinal
+     */
+    private static final KeySig[] STANDARD = new KeySig[majSig.values().length];
+
+    static {
+        for (majSig sig : majSig.values()) {
+            STANDARD[sig.ordinal()] = new KeySig(sig);
+        }
+    }
+
+    /**
+     * Has every pitch, and its corresponding 'keyed pitch', i.e. the key of C maj will translate this table to <pitch, pitch> for every pitch.
+     * However, the key of F maj will be the same except for the pitch B, i.e. <B, Bf>.
+     */
+    private final String[] keyedPitches;
+    /**
+     * The accidental the key gives each pitch, as a single character String, or null if it gives none
+     */
+    private final String[] keyAccidentals;
+    /**
+     * Our major key signature for this particular instance of the key, null for a custom key
+     */
+    private final majSig sig;
 
-    public KeySig(String signatureString) {
-        this.sig = translateString(signatureString);
-        fillPitchMap();
+    private KeySig(majSig sig) {
+        this.sig = sig;
+        this.keyedPitches = PITCHES.clone();
+        int sharps = sharpsOf(sig);
+        for (int i = 0; i < sharps; i++) {
+            keyedPitches[SHARP_ORDER[i]] += "s";
+        }
+        for (int i = 0; i < -sharps; i++) {
+            keyedPitches[FLAT_ORDER[i]] += "f";
+        }
+        this.keyAccidentals = accidentalsOf(keyedPitches);
     }
 
     /**
@@ -32,44 +70,89 @@ public class KeySig {
      *                  pname=e accid=s -> <"e", "s">
      */
     public KeySig(Map<String, String> customKey) {
-        addCNotes(); // Initialize the map with the key of C
+        this.sig = null;
+        this.keyedPitches = PITCHES.clone(); // Start from the key of C
         for (Map.Entry<String, String> entry : customKey.entrySet()) {
             String pitch = entry.getKey().toUpperCase();
             String accid = entry.getValue().toLowerCase();
             if (accid.equals("n")) continue;
-            keyedPitches.replace(pitch, pitch + accid);
+            int slot = slotOf(pitch);
+            if (slot != -1) keyedPitches[slot] = pitch + accid;
         }
+        this.keyAccidentals = accidentalsOf(keyedPitches);
+    }
+
+    /**
+     * Gets the shared KeySig for the mei string rep of a key signature
+     *
+     * @param signatureString the string, formatted as xs or xf where x is the number of flats or sharps, or 0
+     * @return the KeySig of that signature
+     * @throws IllegalStateException if the string is not a key signature
+     */
+    public static KeySig of(String signatureString) {
+        return STANDARD[translateString(signatureString).ordinal()];
     }
 
+    /**
+     * @param basePitch the pitch, 'A' through 'G'
+     * @return the pitch with the accidental this key gives it, e.g. "Bf" for B in F major, or null if it is not a pitch
+     */
     public String getKeySiggedPitch(String basePitch) {
-        return keyedPitches.get(basePitch);
+        int slot = slotOf(basePitch);
+        return (slot == -1) ? null : keyedPitches[slot];
+    }
+
+    /**
+     * @param basePitch the pitch, 'A' through 'G'
+     * @return the accidental this key gives the pitch, e.g. "f" for B in F major, or null if it gives none
+     */
+    public String getKeyAccidental(String basePitch) {
+        int slot = slotOf(basePitch);
+        return (slot == -1) ? null : keyAccidentals[slot];
     }
 
     public majSig getSig() {
         return sig;
     }
 
+    private static int slotOf(String pitch) {
+        if (pitch == null || pitch.length() != 1) return -1;
+        int slot = pitch.charAt(0) - 'A';
+        return (slot >= 0 && slot < PITCHES.length) ? slot : -1;
+    }
+
     /**
-     * This takes our new key signature and fills the keyedPitch map appropriately.
+     * Only the first character after the pitch counts as the accidental, so a custom double sharp acts as a sharp
      */
-    private void fillPitchMap() {
-        switch (sig) {
-            case C -> addCNotes();
-            case G -> addGNote();
-            case D -> addDNote();
-            case A -> addANote();
-            case E -> addENote();
-            case B -> addBNote();
-            case Fs -> addFsNote();
-            case Cs -> addCsNote();
-            case F -> addFNote();
-            case Bf -> addBfNote();
-            case Ef -> addEfNote();
-            case Af -> addAfNote();
-            case Df -> addDfNote();
-            case Gf -> addGfNote();
-            case Cf -> addCfNote();
+    private static String[] accidentalsOf(String[] keyedPitches) {
+        String[] accidentals = new String[keyedPitches.length];
+        for (int i = 0; i < keyedPitches.length; i++) {
+            if (keyedPitches[i].length() > 1) accidentals[i] = String.valueOf(keyedPitches[i].charAt(1)).intern();
         }
+        return accidentals;
+    }
+
+    /**
+     * @return the number of sharps in a major key, negative for flats
+     */
+    private static int sharpsOf(majSig sig) {
+        return switch (sig) {
+            case C -> 0;
+            case G -> 1;
+            case D -> 2;
+            case A -> 3;
+            case E -> 4;
+            case B -> 5;
+            case Fs -> 6;
+            case Cs -> 7;
+            case F -> -1;
+            case Bf -> -2;
+            case Ef -> -3;
+            case Af -> -4;
+            case Df -> -5;
+            case Gf -> -6;
+            case Cf -> -7;
+        };
     }
 
     /**
@@ -78,7 +161,7 @@ public class KeySig {
      * @param s the string, formatted as xs or xf where x is the number of flats or sharps
      * @return the majSig representation of the amount of sharps or flats
      */
-    private majSig translateString(String s) {
+    private static majSig translateString(String s) {
         return switch (s) {
             case "0" -> majSig.C;
             case "1s" -> majSig.G;
@@ -125,125 +208,6 @@ public class KeySig {
         };
     }
 
-    /**
-     * This is setting the map to the key of C
-     */
-    private void addCNotes() {
-        keyedPitches = new HashMap<>(Map.of("A", "A", "B", "B", "C", "C", "D", "D", "E", "E", "F", "F", "G", "G"));
-    }
-
-    /**
-     * For the G major key, the F is sharped, and we initialize the map
-     */
-    private void addGNote() {
-        addCNotes();
-        keyedPitches.replace("F", "Fs");
-    }
-
-    /**
-     * For the D major key, the C is sharped, and we add the previous sharps
-     */
-    private void addDNote() {
-        addGNote();
-        keyedPitches.replace("C", "Cs");
-    }
-
-    /**
-     * For the A major key, the G is sharped, and we add the previous sharps
-     */
-    private void addANote() {
-        addDNote();
-        keyedPitches.replace("G", "Gs");
-    }
-
-    /**
-     * For the E major key, the D is sharped, and we add the previous sharps
-     */
-    private void addENote() {
-        addANote();
-        keyedPitches.replace("D", "Ds");
-    }
-
-    /**
-     * For the B major key, the A is sharped, and we add the previous sharps
-     */
-    private void addBNote() {
-        addENote();
-        keyedPitches.replace("A", "As");
-    }
-
-    /**
-     * For the Fs major key, the E is sharped, and we add the previous sharps
-     */
-    private void addFsNote() {
-        addBNote();
-        keyedPitches.replace("E", "Es");
-    }
-
-    /**
-     * For the Cs major key, the B is sharped, and we add the previous sharps
-     */
-    private void addCsNote() {
-        addFsNote();
-        keyedPitches.replace("B", "Bs");
-    }
-
-    /**
-     * For the F major key, the B is flatted, and we initialize the map
-     */
-    private void addFNote() {
-        addCNotes();
-        keyedPitches.replace("B", "Bf");
-    }
-
-    /**
-     * For the Bf major key, the E is flatted, and we add the previous flats
-     */
-    private void addBfNote() {
-        addFNote();
-        keyedPitches.replace("E", "Ef");
-    }
-
-    /**
-     * For the Ef major key, the A is flatted, and we add the previous flats
-     */
-    private void addEfNote() {
-        addBfNote();
-        keyedPitches.replace("A", "Af");
-    }
-
-    /**
-     * For the Af major key, the D is flatted, and we add the previous flats
-     */
-    private void addAfNote() {
-        addEfNote();
-        keyedPitches.replace("D", "Df");
-    }
-
-    /**
-     * For the Df major key, the G is flatted, and we add the previous flats
-     */
-    private void addDfNote() {
-        addAfNote();
-        keyedPitches.replace("G", "Gf");
-    }
-
-    /**
-     * For the Gf major key, the C is flatted, and we add the previous flats
-     */
-    private void addGfNote() {
-        addDfNote();
-        keyedPitches.replace("C", "Cf");
-    }
-
-    /**
-     * For the Cf major key, the F is flatted, and we add the previous flats
-     */
-    private void addCfNote() {
-        addGfNote();
-        keyedPitches.replace("F", "Ff");
-    }
-
     @Override
     public String toString() {
         return "KeySig{" +
@@ -2,12 +2,12 @@ package music;
 
 import exceptions.Empty;
 
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * This class represents our measures. Each measure has a note representation as a list of Objects, and a {@link KeySig} class the
- * measure is under influence from. Each measure can give its first and last {@link Note}, as well as its interval representation.
- * If another measure is provided in a parameter, it can chain the interval representations together.
+ * This class represents our measures. Each measure has a note representation as a packed array (see {@link PackedNote}), and a
+ * {@link KeySig} class the measure is under influence from. Each measure can give its first and last note, as well as its interval
+ * representation. If another measure is provided in a parameter, it can chain the interval representations together.
  */
 public class Measure {
     /**
@@ -15,58 +15,43 @@ public class Measure {
      */
     private KeySig keySig;
     /**
-     * This represents our notes. It holds {@link Note} and {@link Chord} objects in the order they were found in the measures.
+     * This represents our notes. It holds one {@link PackedNote packed note} per {@link Note} and {@link Chord}, in the order
+     * they were found in the measure, with the key signature already applied.
      */
-    private List<Object> noteRep;
+    private long[] notes;
 
-    public Measure(KeySig keySig, List<Object> noteRep) {
+    public Measure(KeySig keySig, long[] notes) {
         this.keySig = keySig;
-        this.noteRep = noteRep;
+        this.notes = notes;
     }
 
     /**
-     * Initializes the intervals array length based on the presence and validity of a {@code nextMeasure}.
-     * If {@code nextMeasure} is {@code null} or empty (throws {@link Empty}), the array length is {@code size - 1};
-     * otherwise, it is {@code size}.
-     *
-     * @param nextMeasure the next measure to check for linking intervals; may be {@code null}
-     * @param size        the number of notes in the current measure
-     * @return an {@code int[]} sized appropriately for the interval representation between notes and optionally linked measure
+     * @return the number of notes and chords in the measure
      */
-    private static int[] initializeIntervalArray(Measure nextMeasure, int size) {
-        if (nextMeasure == null) {
-            return new int[size - 1];
-        }
+    public int size() {
+        return (notes == null) ? 0 : notes.length;
+    }
 
-        try {
-            nextMeasure.getFirstNoteOfMeasure();
-            return new int[size];
-        } catch (Empty ex) {
-            return new int[size - 1];
-        }
+    public boolean isEmpty() {
+        return size() == 0;
     }
 
     /**
-     * @return the first {@link Note note} of the measure, either a note or the first note of a {@link Chord chord}
+     * @return the intVal of the first note of the measure, either a note or the top note of a {@link Chord chord}, without the key
+     * signature applied
      */
-    public Note getFirstNoteOfMeasure() throws Empty {
-        if (noteRep == null || noteRep.isEmpty() || noteRep.get(0) == null) {
-            throw new Empty();
-        }
-        if (noteRep.get(0).getClass() == Note.class) return (Note) noteRep.get(0);
-        if (noteRep.get(0).getClass() == Chord.class) return ((Chord) noteRep.get(0)).getTopNote();
-        throw new RuntimeException("First note of this measure has unknown class: " + noteRep.get(0).getClass().getName());
+    public int getFirstIntValOfMeasure() throws Empty {
+        if (isEmpty()) throw new Empty();
+        return PackedNote.rawIntVal(notes[0]);
     }
 
     /**
-     * @return the last {@link Note note} of the measure, either a note or the first note of a {@link Chord chord}
+     * @return the intVal of the last note of the measure, either a note or the top note of a {@link Chord chord}, without the key
+     * signature applied
      */
-    public Note getLastNoteOfMeasure() throws Empty {
-        if (noteRep == null || noteRep.isEmpty() || noteRep.get(noteRep.size() - 1) == null) throw new Empty();
-        int lastPos = noteRep.size() - 1;
-        if (noteRep.get(lastPos).getClass() == Note.class) return (Note) noteRep.get(lastPos);
-        if (noteRep.get(lastPos).getClass() == Chord.class) return ((Chord) noteRep.get(lastPos)).getTopNote();
-        throw new RuntimeException("Last note of this measure has unknown class: " + noteRep.get(lastPos).getClass().getName());
+    public int getLastIntValOfMeasure() throws Empty {
+        if (isEmpty()) throw new Empty();
+        return PackedNote.rawIntVal(notes[notes.length - 1]);
     }
 
     /**
@@ -75,55 +60,28 @@ public class Measure {
      * of the provided {@code nextMeasure}.
      *
      * <p>The intervals are calculated as distances in half-steps between {@link Note notes} or {@link Chord chords}.
-     * For chords, only the top note is considered. Notes are adjusted according to the
-     * {@link KeySig key signature} if they lack accidentals.
+     * For chords, only the top note is considered. Within the measure, notes are adjusted according to the
+     * {@link KeySig key signature} if they lack accidentals; the link to the next measure is not. A {@link Document} works out
+     * every measure's intervals at once with an {@link IntervalBuilder}, which this uses too.
      *
      * @param nextMeasure the next {@link Measure} to link intervals with; may be {@code null} if no linking is desired
      * @return an array of half-step distances representing intervals between notes in this measure,
      * including the interval to {@code nextMeasure}'s first note if provided and valid
-     * @throws Empty if this measure contains no notes or its first note is {@code null}
+     * @throws Empty if this measure contains no notes, or {@code nextMeasure} is given but has none
      */
     public int[] getMeasureInterval(Measure nextMeasure) throws Empty {
-        if (noteRep == null || noteRep.isEmpty() || noteRep.get(0) == null) {
+        if (isEmpty() || (nextMeasure != null && nextMeasure.isEmpty())) {
             throw new Empty();
         }
 
-        int size = noteRep.size();
-        int[] intervals = initializeIntervalArray(nextMeasure, size);
-
-        Note previousNote = null;
-        for (int i = 0; i < size; i++) {
-            Object obj = noteRep.get(i);
-            Note currentNote;
-
-            if (obj.getClass() == Note.class) {
-                currentNote = (Note) obj;
-            } else if (obj.getClass() == Chord.class) {
-                currentNote = ((Chord) obj).getTopNote();
-            } else {
-                throw new RuntimeException("Unexpected object type at position " + i + ": " + obj.getClass().getName());
-            }
-
-            if (currentNote.getAccidental() == null) {
-                String keySiggedPitch = keySig.getKeySiggedPitch(currentNote.getPitch());
-                if (keySiggedPitch.length() > 1) {
-                    String accidental = String.valueOf(keySiggedPitch.charAt(1));
-                    currentNote = currentNote.applyAccidental(accidental);
-                }
-            }
-
-            if (i != 0) {
-                intervals[i - 1] = previousNote.getHalfStepDistance(currentNote);
-            }
-            previousNote = currentNote;
-        }
-
+        IntervalBuilder builder = new IntervalBuilder();
+        builder.addMeasure(this);
         if (nextMeasure != null) {
-            Note nextFirstNote = nextMeasure.getFirstNoteOfMeasure();
-            intervals[intervals.length - 1] = this.getLastNoteOfMeasure().getHalfStepDistance(nextFirstNote);
+            builder.addMeasure(nextMeasure); // Links this measure to it, without adding its own intervals
+        } else {
+            builder.finish();
         }
-
-        return intervals;
+        return builder.getIntervals();
     }
 
     public KeySig getKeySig() {
@@ -134,19 +92,23 @@ public class Measure {
         this.keySig = keySig;
     }
 
-    public List<Object> getNoteRep() {
-        return noteRep;
+    public long[] getNotes() {
+        return notes;
     }
 
-    public void setNoteRep(List<Object> noteRep) {
-        this.noteRep = noteRep;
+    public void setNotes(long[] notes) {
+        this.notes = notes;
     }
 
     @Override
     public String toString() {
+        int[] keyedIntVals = new int[size()];
+        for (int i = 0; i < keyedIntVals.length; i++) {
+            keyedIntVals[i] = PackedNote.keyedIntVal(notes[i]);
+        }
         return "Measure{" +
                 ", keySig=" + keySig +
-                ", noteRep=" + noteRep +
+                ", notes=" + Arrays.toString(keyedIntVals) +
                 '}';
     }
 }
@@ -8,6 +8,16 @@ import java.util.Objects;
  */
 public class Note {
 
+    /**
+     * The pitch names, by letter minus 'A', so notes share them rather than each holding its own String
+     */
+    private static final String[] PITCH_NAMES = {"A", "B", "C", "D", "E", "F", "G"};
+    /**
+     * The position of each natural in the octave, by letter minus 'A', from 0 (C) to 11 (B)
+     */
+    private static final int[] NATURAL_PITCH_POS = {9, 11, 0, 2, 4, 5, 7};
+    private static final int UNKNOWN_ACCIDENTAL = Integer.MIN_VALUE;
+
     /**
      * The basic pitch of this note, before any accidentals are added
      */
@@ -53,12 +63,8 @@ public class Note {
      */
     public Note(char pitch, String accidental, int octave, Float duration) {
         this.accidental = accidental;
-        if (accidental != null) {
-            this.pitchPos = makePitchPos(String.valueOf(pitch).toUpperCase() + this.accidental);
-        } else {
-            this.pitchPos = makePitchPos(String.valueOf(pitch).toUpperCase());
-        }
-        this.pitch = String.valueOf(pitch).toUpperCase();
+        this.pitchPos = makePitchPos(pitch, accidental);
+        this.pitch = PITCH_NAMES[Character.toUpperCase(pitch) - 'A'];
         this.octave = octave;
         this.intVal = octave * 12 + this.pitchPos;
         this.duration = duration;
@@ -96,26 +102,34 @@ public class Note {
     }
 
     /**
-     * This is a function to return the int note values in an octave given the pitch and accidental
+     * This is a function to return the int note values in an octave given the pitch and accidental. It is two table lookups:
+     * the natural's place in the octave, then the accidental's offset, wrapped around the octave.
      *
-     * @param s the string we are inputting, a combination of 'pitch'+'accidental'.
+     * @param pitch      the base pitch, 'A' through 'G' in either case
+     * @param accidental the accidental, could be null.
      * @return an integer representing its place in the octave
      */
-    private int makePitchPos(String s) {
-        return switch (s) {
-            case "A", "An", "Gx", "Gss", "Bff" -> 9;
-            case "As", "Bf", "Cff" -> 10;
-            case "B", "Bn", "Ax", "Ass", "Cf" -> 11;
-            case "C", "Cn", "Bs", "Dff" -> 0;
-            case "Cs", "Bx", "Bss", "Df" -> 1;
-            case "D", "Dn", "Cx", "Css", "Eff" -> 2;
-            case "Ds", "Ef", "Fff" -> 3;
-            case "E", "En", "Dx", "Dss", "Ff" -> 4;
-            case "F", "Fn", "Es", "Gff" -> 5;
-            case "Fs", "Gf", "Ex", "Ess" -> 6;
-            case "G", "Gn", "Fx", "Fss", "Aff" -> 7;
-            case "Gs", "Af" -> 8;
-            default -> throw new RuntimeException("Unknown note value: " + s);
+    private static int makePitchPos(char pitch, String accidental) {
+        int letter = Character.toUpperCase(pitch) - 'A';
+        int offset = accidentalOffset(accidental);
+        if (letter < 0 || letter >= NATURAL_PITCH_POS.length || offset == UNKNOWN_ACCIDENTAL) {
+            throw new RuntimeException("Unknown note value: " + Character.toUpperCase(pitch) + (accidental == null ? "" : accidental));
+        }
+        return Math.floorMod(NATURAL_PITCH_POS[letter] + offset, 12);
+    }
+
+    /**
+     * @return how many half steps an accidental moves a pitch, or {@link #UNKNOWN_ACCIDENTAL} if we don't know it
+     */
+    private static int accidentalOffset(String accidental) {
+        if (accidental == null) return 0;
+        return switch (accidental) {
+            case "", "n" -> 0;
+            case "s" -> 1;
+            case "f" -> -1;
+            case "x", "ss" -> 2;
+            case "ff" -> -2;
+            default -> UNKNOWN_ACCIDENTAL;
         };
     }
 
@@ -126,15 +140,32 @@ public class Note {
      * @return a new Note with the accidental configured
      */
     public Note applyAccidental(String accidental) {
-        Note newNote = new Note(this.pitch.charAt(0), accidental, this.octave, this.duration);
+        // Applying the accidental we already have changes nothing, most often no accidental at all
+        if (Objects.equals(accidental, this.accidental)) return this;
+        return new Note(this.pitch.charAt(0), accidental, octaveWithAccidental(accidental), this.duration);
+    }
+
+    /**
+     * The intVal this note would have with a new accidental, as {@link #applyAccidental} would give, without making the note
+     *
+     * @param accidental the accidental in question we are applying
+     * @return the intVal of the note with the accidental configured
+     */
+    public int getIntValWithAccidental(String accidental) {
+        return octaveWithAccidental(accidental) * 12 + makePitchPos(this.pitch.charAt(0), accidental);
+    }
 
-        int difference = newNote.getPitchPos() - this.pitchPos;
+    /**
+     * The octave this note is in once a new accidental is applied, which only changes when it crosses between B and C
+     */
+    private int octaveWithAccidental(String accidental) {
+        int difference = makePitchPos(this.pitch.charAt(0), accidental) - this.pitchPos;
         // If the following is true, then the new note jumped an octave up, i.e. we made C into Cb
-        if (difference >= 6) return new Note(this.pitch.charAt(0), accidental, this.octave - 1, this.duration);
+        if (difference >= 6) return this.octave - 1;
         // If the following is true, then the new note dropped an octave down, i.e. we made B into Bs
-        if (difference <= -6) return new Note(this.pitch.charAt(0), accidental, this.octave + 1, this.duration);
+        if (difference <= -6) return this.octave + 1;
         // Otherwise it was done correctly
-        return newNote;
+        return this.octave;
     }
 
     public String getPitch() {
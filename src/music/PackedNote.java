@@ -0,0 +1,101 @@
+package music;
+
+/**
+ * This class packs what a {@link Measure} needs to know about one of its {@link Note Notes} or {@link Chord Chords}
+ * into a single {@code long}, so a measure is one primitive array rather than a list of note objects.
+ * <p>
+ * From the lowest bit up, a packed note holds:
+ * </p>
+ * <ul>
+ *     <li>24 bits: the keyed intVal, the keyboard position once the measure's {@link KeySig} is applied</li>
+ *     <li>24 bits: the raw intVal, the keyboard position before the key signature (accidentals already applied)</li>
+ *     <li>15 bits: the duration code, eight times the duration rounded, or 0 for no duration</li>
+ *     <li>1 bit: whether this is the top note of a chord</li>
+ * </ul>
+ * Both intVals are signed. For a chord, everything is that of its top {@link Chord#getTopNote() note}.
+ */
+public final class PackedNote {
+
+    private static final int INT_VAL_BITS = 24;
+    private static final long INT_VAL_MASK = (1L << INT_VAL_BITS) - 1;
+    private static final int RAW_SHIFT = INT_VAL_BITS;
+    private static final int DURATION_SHIFT = 2 * INT_VAL_BITS;
+    private static final long DURATION_MASK = 0x7FFF;
+    private static final long CHORD_FLAG = 1L << 63;
+    /**
+     * Durations are kept in eighths, which is exact for up to three dots on a whole note
+     */
+    private static final int DURATION_SCALE = 8;
+
+    private PackedNote() {
+    }
+
+    /**
+     * Packs a note
+     *
+     * @param keyedIntVal the keyboard position with the key signature applied
+     * @param rawIntVal   the keyboard position without the key signature
+     * @param duration    the duration of the note, may be null
+     * @param chord       whether this is the top note of a chord
+     * @return the packed note
+     */
+    public static long pack(int keyedIntVal, int rawIntVal, Float duration, boolean chord) {
+        long packed = (keyedIntVal & INT_VAL_MASK)
+                | ((rawIntVal & INT_VAL_MASK) << RAW_SHIFT)
+                | (durationCode(duration) << DURATION_SHIFT);
+        return chord ? packed | CHORD_FLAG : packed;
+    }
+
+    /**
+     * Packs a single note found in a measure under the given key signature
+     */
+    public static long of(Note note, KeySig keySig) {
+        return pack(keyedIntVal(note, keySig), note.getIntVal(), note.getDuration(), false);
+    }
+
+    /**
+     * Packs a chord found in a measure under the given key signature, by its top note
+     */
+    public static long of(Chord chord, KeySig keySig) {
+        Note top = chord.getTopNote();
+        return pack(keyedIntVal(top, keySig), top.getIntVal(), top.getDuration(), true);
+    }
+
+    /**
+     * A note without an accidental of its own takes the one its key signature gives its pitch, if any
+     */
+    private static int keyedIntVal(Note note, KeySig keySig) {
+        if (note.getAccidental() != null) return note.getIntVal();
+        String keyAccidental = keySig.getKeyAccidental(note.getPitch());
+        return (keyAccidental == null) ? note.getIntVal() : note.getIntValWithAccidental(keyAccidental);
+    }
+
+    public static int keyedIntVal(long packed) {
+        return signExtend(packed & INT_VAL_MASK);
+    }
+
+    public static int rawIntVal(long packed) {
+        return signExtend((packed >>> RAW_SHIFT) & INT_VAL_MASK);
+    }
+
+    /**
+     * @return the duration of the packed note, or null if it had none
+     */
+    public static Float duration(long packed) {
+        long code = (packed >>> DURATION_SHIFT) & DURATION_MASK;
+        return (code == 0) ? null : (float) code / DURATION_SCALE;
+    }
+
+    public static boolean isChord(long packed) {
+        return (packed & CHORD_FLAG) != 0;
+    }
+
+    private static long durationCode(Float duration) {
+        if (duration == null) return 0;
+        return Math.max(1, Math.min(DURATION_MASK, Math.round(duration * DURATION_SCALE)));
+    }
+
+    private static int signExtend(long value) {
+        return (int) (value << (32 - INT_VAL_BITS)) >> (32 - INT_VAL_BITS);
+    }
+}
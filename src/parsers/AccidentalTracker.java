@@ -1,31 +1,42 @@
 package parsers;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * This class is mostly a wrapper around a map, to keep track of our accidentals in a measure. The {@link MeasureParser MeasureParser} object
- * uses this one to parse out the notes.
+ * This class keeps track of our accidentals in a measure. The {@link MeasureParser MeasureParser} object uses this one to
+ * parse out the notes. It is a fixed slot per pitch letter, so tracking a measure never allocates.
  */
 public class AccidentalTracker {
     /**
-     * This map keeps track of the pitches and their respective accidentals. If they do not have an accidental, then there is no entry for that note in the map.
+     * The current accidental of each pitch, by letter minus 'A'. A pitch without an accidental has a null slot.
      */
-    Map<String, String> accidentalMap;
+    private final String[] accidentals;
 
     public AccidentalTracker() {
-        this.accidentalMap = new HashMap<>();
+        this.accidentals = new String[7];
     }
 
+    /**
+     * @param pitch the pitch, 'A' through 'G'
+     * @return the accidental the pitch currently has in the measure, or null if none
+     */
     public String getCurrentAccidentalOfPitch(String pitch) {
-        return accidentalMap.get(pitch);
+        return accidentals[slotOf(pitch)];
     }
 
+    /**
+     * @param pitch      the pitch, 'A' through 'G'
+     * @param accidental the accidental the pitch has from here on in the measure
+     */
     public void modifyAccidentalMap(String pitch, String accidental) {
-        accidentalMap.put(pitch, accidental);
+        accidentals[slotOf(pitch)] = accidental;
     }
 
     public void clear() {
-        accidentalMap.clear();
+        Arrays.fill(accidentals, null);
+    }
+
+    private static int slotOf(String pitch) {
+        return pitch.charAt(0) - 'A';
     }
 }
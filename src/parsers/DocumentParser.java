@@ -6,17 +6,13 @@ import music.Measure;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.StringWriter;
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -46,9 +42,10 @@ public class DocumentParser {
      */
     public org.w3c.dom.Document domDocument;
     /**
-     * The File that this parser is going to use to parse out into a document
+     * What this parser is going to parse out into a document: a {@link File}, {@code byte[]}, {@link InputStream},
+     * or {@link Reader}, as set by the matching setter. Only one source is held at a time.
      */
-    private File inFile;
+    private Object inSource;
 
     public DocumentParser() {
         this.measureParser = new MeasureParser();
@@ -64,10 +61,7 @@ public class DocumentParser {
      */
     public static String elementToString(Element element) {
         try {
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            StringWriter writer = new StringWriter();
-            transformer.transform(new DOMSource(element), new StreamResult(writer));
-            return writer.toString();
+            return XmlFactories.serialize(element, false);
         } catch (Exception e) {
             System.out.println("Exception in element to String. Returning null.");
             return null;
@@ -79,11 +73,7 @@ public class DocumentParser {
      */
     public static String elementToStringWithoutXmlDeclaration(Element element) {
         try {
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-            StringWriter writer = new StringWriter();
-            transformer.transform(new DOMSource(element), new StreamResult(writer));
-            return writer.toString();
+            return XmlFactories.serialize(element, true);
         } catch (Exception e) {
             System.err.println("Error converting element to string: " + e.getMessage());
             return "";
@@ -95,34 +85,38 @@ public class DocumentParser {
      */
     public static String documentToString(org.w3c.dom.Document doc) {
         try {
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            StringWriter writer = new StringWriter();
-            transformer.transform(new DOMSource(doc), new StreamResult(writer));
-            return writer.toString();
+            return XmlFactories.serialize(doc, false);
         } catch (Exception e) {
             System.err.println("Error converting document to string: " + e.getMessage());
             return "";
         }
     }
 
+    /**
+     * Parses the source set on this parser into a {@link Document}. Despite the name, the source need not be a file.
+     *
+     * @return the parsed document
+     * @throws FileNotFoundException if no source is set or it can't be read
+     */
     public Document getDocumentFromFile() throws FileNotFoundException {
         return new Document(getListOfMeasuresFromInFile(), getMetadataFromInFile());
     }
 
     /**
-     * Parses the MEI file into a DOM Document for efficient processing.
-     * Caches the result to avoid reparsing for multiple operations.
+     * Parses the MEI source into a DOM Document for efficient processing.
+     * Caches the result to avoid reparsing for multiple operations, which also means a stream or reader source is
+     * only ever read once.
      *
      * @return the parsed DOM Document
-     * @throws FileNotFoundException if the input file cannot be found
+     * @throws FileNotFoundException if no source is set or it cannot be parsed
      */
     public org.w3c.dom.Document getDOMDocument() throws FileNotFoundException {
         if (domDocument == null) {
+            if (inSource == null) throw new FileNotFoundException("No MEI source set");
             try {
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                factory.setNamespaceAware(true); // MEI uses namespaces
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                domDocument = builder.parse(inFile);
+                domDocument = (inSource instanceof File file)
+                        ? XmlFactories.parse(file)
+                        : XmlFactories.parse(toInputSource(inSource));
             } catch (Exception e) {
                 throw new FileNotFoundException("Could not parse MEI file: " + e.getMessage());
             }
@@ -130,6 +124,20 @@ public class DocumentParser {
         return domDocument;
     }
 
+    /**
+     * Wraps an in-memory source for the XML parser. Bytes and streams are left for the parser to decode, so the
+     * encoding in their XML declaration is honoured; a reader is already decoded.
+     */
+    private static InputSource toInputSource(Object source) {
+        if (source instanceof byte[] bytes) {
+            return new InputSource(new ByteArrayInputStream(bytes));
+        } else if (source instanceof InputStream stream) {
+            return new InputSource(stream);
+        } else {
+            return new InputSource((Reader) source);
+        }
+    }
+
     /**
      * Parses and returns a list of {@link Measure} objects from the input file.
      *
@@ -264,9 +272,49 @@ public class DocumentParser {
      * @param inFile The file we are setting this classes internal file to
      */
     public void setInFile(File inFile) {
-        if (!Objects.equals(this.inFile, inFile)) {
-            this.inFile = inFile;
-            this.domDocument = null; // Clear cache when file changes
+        setInSource(inFile);
+    }
+
+    /**
+     * Setting the source to MEI bytes held in memory, so parsing never touches the filesystem.
+     * Clears the cached DOM document when the source changes.
+     *
+     * @param inBytes The encoded MEI, in the encoding of its XML declaration (UTF-8 if it has none)
+     */
+    public void setInBytes(byte[] inBytes) {
+        setInSource(inBytes);
+    }
+
+    /**
+     * Setting the source to a stream of MEI bytes. The stream is read once, on the first parse, and not closed.
+     * Clears the cached DOM document when the source changes.
+     *
+     * @param inStream The stream of encoded MEI
+     */
+    public void setInStream(InputStream inStream) {
+        setInSource(inStream);
+    }
+
+    /**
+     * Setting the source to a reader of MEI text, e.g. a {@link java.io.StringReader} over MEI we already hold as a
+     * String. The reader is read once, on the first parse, and not closed.
+     * Clears the cached DOM document when the source changes.
+     *
+     * @param inReader The reader of MEI text
+     */
+    public void setInReader(Reader inReader) {
+        setInSource(inReader);
+    }
+
+    /**
+     * Swaps the source, clearing the cached DOM document if it is a different one. Files are compared by path,
+     * anything else by identity.
+     */
+    private void setInSource(Object inSource) {
+        boolean same = (inSource instanceof File) ? Objects.equals(this.inSource, inSource) : this.inSource == inSource;
+        if (!same) {
+            this.inSource = inSource;
+            this.domDocument = null; // Clear cache when source changes
         }
     }
 }
\ No newline at end of file
@@ -33,7 +33,7 @@ public class KeySigParser {
         String sigValue = getNonEmptySigAttribute(keySigElement);
 
         if (!sigValue.isEmpty()) {
-            return new KeySig(sigValue);
+            return KeySig.of(sigValue);
         }
 
         // This handles custom keys that may happen. Non-standard keys have the 'keyAccid' form
@@ -58,6 +58,23 @@ public class KeySigParser {
         return new KeySig(customKey);
     }
 
+    /**
+     * Makes a KeySig from the raw signature attributes of a key signature element, for parsers that read MEI without
+     * building a DOM. The first non-empty of {@code sig}, {@code keysig}, and {@code key.sig} wins, as it does for
+     * {@link #getKeySigFromElement}.
+     *
+     * @param sig       the {@code sig} attribute, null if absent
+     * @param keysig    the {@code keysig} attribute, null if absent
+     * @param keyDotSig the {@code key.sig} attribute, null if absent
+     * @return a new KeySig class based on the value of the key sig
+     */
+    public KeySig getKeySigFromAttributes(String sig, String keysig, String keyDotSig) {
+        for (String value : new String[]{sig, keysig, keyDotSig}) {
+            if (value != null && !value.isEmpty()) return KeySig.of(value);
+        }
+        throw new IllegalArgumentException("keySig element has no signature attribute");
+    }
+
     private String getNonEmptySigAttribute(Element keySigElement) {
         String sig = keySigElement.getAttribute("sig");
         if (!sig.isEmpty()) return sig;
@@ -4,11 +4,13 @@ import music.Chord;
 import music.KeySig;
 import music.Measure;
 import music.Note;
+import music.PackedNote;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -42,7 +44,7 @@ public class MeasureParser {
     }
 
     public MeasureParser() {
-        this(new KeySig("0"));
+        this(KeySig.of("0"));
     }
 
     /**
@@ -53,29 +55,29 @@ public class MeasureParser {
      */
     public Measure getMeasureFromElement(Element measureElement) {
 //        System.out.println("(getMeasureFromEl): "+DocumentParser.elementToString(measureElement));
-        List<Object> noteReps = getNoteRepFromMei(measureElement);
-        return new Measure(keySig, noteReps);
+        return new Measure(keySig, getNoteRepFromMei(measureElement));
     }
 
     /**
-     * Extracts all {@link Note} and {@link Chord} objects from the provided MEI measure element.
+     * Extracts all {@link Note} and {@link Chord} objects from the provided MEI measure element, as {@link PackedNote packed notes}.
      *
      * <p>Only the first {@code <staff>} and its first {@code <layer>} are considered in parsing.
      * Notes and chords are parsed in the order they appear within this layer.
-     * Accidentals are tracked and applied consistently throughout the measure.
+     * Accidentals are tracked and applied consistently throughout the measure, and the key signature is applied as they are packed.
      *
      * @param measureElement the MEI element representing a measure
-     * @return a List of {@link Note} and {@link Chord} objects in the order found within the measure
+     * @return the packed {@link Note} and {@link Chord} objects in the order found within the measure
      */
-    private List<Object> getNoteRepFromMei(Element measureElement) {
-        List<Object> noteAndChordList = new ArrayList<>();
+    private long[] getNoteRepFromMei(Element measureElement) {
+        long[] noteAndChordList = new long[16];
+        int count = 0;
         accidentalTracker.clear();
 
         // Get first <staff>
         NodeList staffs = measureElement.getElementsByTagName("staff");
         if (staffs.getLength() == 0) {
             System.out.println("No staff tags found in element: " + DocumentParser.elementToString(measureElement));
-            return noteAndChordList;
+            return new long[0];
         }
         Element staff = (Element) staffs.item(0);
 
@@ -83,7 +85,7 @@ public class MeasureParser {
         NodeList layers = staff.getElementsByTagName("layer");
         if (layers.getLength() == 0) {
             System.out.println("No layer tags found in element: " + DocumentParser.elementToString(measureElement));
-            return noteAndChordList;
+            return new long[0];
         }
         Element layer = (Element) layers.item(0);
 
@@ -95,19 +97,8 @@ public class MeasureParser {
             Element element = (Element) node;
 
             switch (element.getTagName()) {
-                case "note" -> {
-                    Note parsedNote = noteParser.getNoteFromElement(element);
-                    Note updatedNote = updatedNoteFromAccidentalTracker(parsedNote);
-                    noteAndChordList.add(updatedNote);
-                }
-                case "chord" -> {
-                    Chord parsedChord = chordParser.getChordFromElement(element);
-                    List<Note> updatedNotes = new ArrayList<>();
-                    for (Note note : parsedChord.getNotes()) {
-                        updatedNotes.add(updatedNoteFromAccidentalTracker(note));
-                    }
-                    noteAndChordList.add(new Chord(updatedNotes));
-                }
+                case "note" -> noteAndChordList = append(noteAndChordList, count++, packNote(element));
+                case "chord" -> noteAndChordList = append(noteAndChordList, count++, packChord(element));
                 case "beam" -> {
                     NodeList beamNotes = element.getChildNodes();
                     for (int j = 0; j < beamNotes.getLength(); j++) {
@@ -115,16 +106,9 @@ public class MeasureParser {
                         if (beamChild.getNodeType() != Node.ELEMENT_NODE) continue;
                         Element beamElem = (Element) beamChild;
                         if (beamElem.getTagName().equals("note")) {
-                            Note parsedNote = noteParser.getNoteFromElement(beamElem);
-                            Note updatedNote = updatedNoteFromAccidentalTracker(parsedNote);
-                            noteAndChordList.add(updatedNote);
+                            noteAndChordList = append(noteAndChordList, count++, packNote(beamElem));
                         } else if (beamElem.getTagName().equals("chord")) {
-                            Chord parsedChord = chordParser.getChordFromElement(beamElem);
-                            List<Note> updatedNotes = new ArrayList<>();
-                            for (Note note : parsedChord.getNotes()) {
-                                updatedNotes.add(updatedNoteFromAccidentalTracker(note));
-                            }
-                            noteAndChordList.add(new Chord(updatedNotes));
+                            noteAndChordList = append(noteAndChordList, count++, packChord(beamElem));
                         }
                     }
                 }
@@ -132,7 +116,38 @@ public class MeasureParser {
             }
         }
 
-        return noteAndChordList;
+        return Arrays.copyOf(noteAndChordList, count);
+    }
+
+    /**
+     * Parses a note element, with the accidentals of the measure so far, into a packed note under the current key signature
+     */
+    private long packNote(Element noteElement) {
+        Note parsedNote = noteParser.getNoteFromElement(noteElement);
+        return PackedNote.of(updatedNoteFromAccidentalTracker(parsedNote), keySig);
+    }
+
+    /**
+     * Parses a chord element, with the accidentals of the measure so far, into a packed note under the current key signature
+     */
+    private long packChord(Element chordElement) {
+        Chord parsedChord = chordParser.getChordFromElement(chordElement);
+        List<Note> updatedNotes = new ArrayList<>();
+        for (Note note : parsedChord.getNotes()) {
+            updatedNotes.add(updatedNoteFromAccidentalTracker(note));
+        }
+        return PackedNote.of(new Chord(updatedNotes), keySig);
+    }
+
+    /**
+     * Sets {@code notes[position]}, growing the array if it is full
+     *
+     * @return the array holding the value, which may be a new one
+     */
+    private static long[] append(long[] notes, int position, long value) {
+        if (position == notes.length) notes = Arrays.copyOf(notes, notes.length * 2);
+        notes[position] = value;
+        return notes;
     }
 
     /**
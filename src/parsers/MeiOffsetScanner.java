@@ -0,0 +1,316 @@
+package parsers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class finds where the measures, key signatures, and skeleton of an MEI file lie in its text, so a partial
+ * sheet music request can cut them straight out of the stored file instead of parsing and re-serializing it.
+ * <p>
+ * It is a light tokenizer, not a parser: it skips comments, CDATA, processing instructions, and the DOCTYPE, matches
+ * start and end tags, and reads attribute names, but never builds anything or resolves entities. What it finds
+ * matches what {@link serverCode.Services.PartialSheetMusic} used to take from the DOM: only the first
+ * {@code section} counts, and any other {@code section}, nested in it or after it, is left out.
+ * </p>
+ * <p>
+ * Offsets are {@code char} indexes into the String the file was scanned from, which is the String we store in and
+ * read back from Postgres, so {@link String#substring(int, int)} cuts exactly the same text out of it.
+ * </p>
+ */
+public class MeiOffsetScanner {
+
+    /**
+     * Where the parts of one MEI file lie, each as a flat array
+     *
+     * @param measureOffsets the {@code [start, end)} of each measure in the first section, in document order
+     * @param keySigOffsets  the {@code [start, end, measuresBefore)} of each key signature in the first section, in
+     *                       document order, where {@code measuresBefore} is how many measures start before it
+     * @param skeletonRanges the {@code [start, end)} ranges that together make the root element with everything in
+     *                       the first section, and every other section, left out
+     */
+    public record Offsets(int[] measureOffsets, int[] keySigOffsets, int[] skeletonRanges) {
+    }
+
+    private static final String SECTION = "section";
+
+    private enum Kind {OTHER, MEASURE, KEY_SIG, FIRST_SECTION, SKIPPED_SECTION}
+
+    /**
+     * An element whose end tag we have not reached yet
+     */
+    private record Open(String name, int start, Kind kind, int slot) {
+    }
+
+    private final String text;
+    private int pos;
+    private final List<Open> openElements = new ArrayList<>();
+
+    private int[] measures = new int[64];
+    private int measureCount;
+    private int[] keySigs = new int[24];
+    private int keySigCount;
+    private int measuresStarted;
+    /**
+     * The ranges of the root element that are left out of the skeleton, in document order
+     */
+    private int[] cuts = new int[8];
+    private int cutCount;
+
+    private int rootStart = -1;
+    private int rootEnd = -1;
+    private boolean foundFirstSection;
+    /**
+     * Whether we are inside the first section, and not inside a section nested in it
+     */
+    private boolean inFirstSection;
+
+    private MeiOffsetScanner(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Scans the text of an MEI file
+     *
+     * @param mei the MEI, exactly as it is stored
+     * @return where its parts lie, or null if it has no section, is not well-formed, or declares entities of its own
+     * that a cut-out measure could not be read without
+     */
+    public static Offsets scan(String mei) {
+        if (mei == null) return null;
+        MeiOffsetScanner scanner = new MeiOffsetScanner(mei);
+        return scanner.scanAll() ? scanner.offsets() : null;
+    }
+
+    private Offsets offsets() {
+        int[] skeleton = new int[cutCount + 2];
+        int from = rootStart;
+        int count = 0;
+        for (int i = 0; i < cutCount; i += 2) {
+            if (cuts[i] > from) {
+                skeleton[count++] = from;
+                skeleton[count++] = cuts[i];
+            }
+            from = Math.max(from, cuts[i + 1]);
+        }
+        if (rootEnd > from) {
+            skeleton[count++] = from;
+            skeleton[count++] = rootEnd;
+        }
+        return new Offsets(
+                Arrays.copyOf(measures, measureCount),
+                Arrays.copyOf(keySigs, keySigCount),
+                Arrays.copyOf(skeleton, count)
+        );
+    }
+
+    private boolean scanAll() {
+        while (true) {
+            pos = text.indexOf('<', pos);
+            if (pos < 0) break;
+
+            if (text.startsWith("<!--", pos)) {
+                if (!skipPast("-->")) return false;
+            } else if (text.startsWith("<![CDATA[", pos)) {
+                if (!skipPast("]]>")) return false;
+            } else if (text.startsWith("<?", pos)) {
+                if (!skipPast("?>")) return false;
+            } else if (text.startsWith("<!", pos)) {
+                if (!skipDoctype()) return false;
+            } else if (text.startsWith("</", pos)) {
+                if (!endTag()) return false;
+            } else {
+                if (!startTag()) return false;
+            }
+        }
+        return rootEnd >= 0 && openElements.isEmpty() && foundFirstSection;
+    }
+
+    private boolean skipPast(String terminator) {
+        int end = text.indexOf(terminator, pos);
+        if (end < 0) return false;
+        pos = end + terminator.length();
+        return true;
+    }
+
+    /**
+     * Skips a DOCTYPE, failing if it has an internal subset, as that may declare entities
+     */
+    private boolean skipDoctype() {
+        for (int i = pos + 2; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '[') return false;
+            if (c == '"' || c == '\'') {
+                i = text.indexOf(c, i + 1);
+                if (i < 0) return false;
+            } else if (c == '>') {
+                pos = i + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean startTag() {
+        int start = pos;
+        pos++;
+        String name = readName();
+        if (name.isEmpty()) return false;
+
+        boolean keySigAttribute = false;
+        boolean selfClosing;
+        while (true) {
+            skipWhitespace();
+            if (pos >= text.length()) return false;
+            char c = text.charAt(pos);
+            if (c == '>') {
+                selfClosing = false;
+                pos++;
+                break;
+            }
+            if (c == '/') {
+                if (!text.startsWith("/>", pos)) return false;
+                selfClosing = true;
+                pos += 2;
+                break;
+            }
+            String attribute = readName();
+            if (attribute.isEmpty()) return false;
+            skipWhitespace();
+            if (pos >= text.length() || text.charAt(pos) != '=') return false;
+            pos++;
+            skipWhitespace();
+            if (pos >= text.length()) return false;
+            char quote = text.charAt(pos);
+            if (quote != '"' && quote != '\'') return false;
+            int close = text.indexOf(quote, pos + 1);
+            if (close < 0) return false;
+            pos = close + 1;
+            if (attribute.equals("key.sig") || attribute.equals("keysig")) keySigAttribute = true;
+        }
+
+        if (rootStart < 0) {
+            rootStart = start;
+        } else if (openElements.isEmpty()) {
+            return false; // A second root
+        }
+
+        Kind kind = classify(name, keySigAttribute);
+        int slot = -1;
+        switch (kind) {
+            case MEASURE -> {
+                slot = measureCount;
+                measures = ensureCapacity(measures, measureCount + 2);
+                measures[measureCount++] = start;
+                measures[measureCount++] = -1;
+                measuresStarted++;
+            }
+            case KEY_SIG -> {
+                slot = keySigCount;
+                keySigs = ensureCapacity(keySigs, keySigCount + 3);
+                keySigs[keySigCount++] = start;
+                keySigs[keySigCount++] = -1;
+                keySigs[keySigCount++] = measuresStarted;
+            }
+            case FIRST_SECTION -> {
+                foundFirstSection = true;
+                inFirstSection = !selfClosing;
+                slot = pos; // Where its content starts
+            }
+            case SKIPPED_SECTION -> inFirstSection = false;
+            default -> {
+            }
+        }
+
+        if (selfClosing) {
+            close(new Open(name, start, kind, slot), start, pos);
+        } else {
+            openElements.add(new Open(name, start, kind, slot));
+        }
+        return true;
+    }
+
+    private boolean endTag() {
+        int start = pos;
+        pos += 2;
+        String name = readName();
+        skipWhitespace();
+        if (pos >= text.length() || text.charAt(pos) != '>') return false;
+        pos++;
+
+        if (openElements.isEmpty()) return false;
+        Open open = openElements.remove(openElements.size() - 1);
+        if (!open.name().equals(name)) return false;
+        close(open, start, pos);
+        return true;
+    }
+
+    /**
+     * Records where an element ends
+     *
+     * @param endTagStart where its end tag starts, or where it starts if it is self-closing
+     * @param end         just past its end tag
+     */
+    private void close(Open open, int endTagStart, int end) {
+        switch (open.kind()) {
+            case MEASURE -> measures[open.slot() + 1] = end;
+            case KEY_SIG -> keySigs[open.slot() + 1] = end;
+            case FIRST_SECTION -> {
+                inFirstSection = false;
+                if (open.slot() < endTagStart) addCut(open.slot(), endTagStart);
+            }
+            case SKIPPED_SECTION -> {
+                // One nested in the first section is already left out with everything else in it
+                inFirstSection = hasOpen(Kind.FIRST_SECTION);
+                if (!inFirstSection) addCut(open.start(), end);
+            }
+            default -> {
+            }
+        }
+        if (openElements.isEmpty()) rootEnd = end;
+    }
+
+    private Kind classify(String name, boolean keySigAttribute) {
+        if (name.equals(SECTION)) {
+            if (!foundFirstSection) return Kind.FIRST_SECTION;
+            // Sections inside one we already skip are skipped along with it
+            return hasOpen(Kind.SKIPPED_SECTION) ? Kind.OTHER : Kind.SKIPPED_SECTION;
+        }
+        if (!inFirstSection) return Kind.OTHER;
+        if (name.equalsIgnoreCase("measure")) return Kind.MEASURE;
+        String lowerName = name.toLowerCase();
+        if ((lowerName.contains("key") && lowerName.contains("sig")) || keySigAttribute) return Kind.KEY_SIG;
+        return Kind.OTHER;
+    }
+
+    private boolean hasOpen(Kind kind) {
+        for (Open open : openElements) {
+            if (open.kind() == kind) return true;
+        }
+        return false;
+    }
+
+    private void addCut(int start, int end) {
+        cuts = ensureCapacity(cuts, cutCount + 2);
+        cuts[cutCount++] = start;
+        cuts[cutCount++] = end;
+    }
+
+    private String readName() {
+        int start = pos;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (Character.isWhitespace(c) || c == '>' || c == '/' || c == '=') break;
+            pos++;
+        }
+        return text.substring(start, pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        return (capacity > array.length) ? Arrays.copyOf(array, Math.max(capacity, array.length * 2)) : array;
+    }
+}
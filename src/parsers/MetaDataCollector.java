@@ -0,0 +1,189 @@
+package parsers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * This class collects the metadata of an {@code meiHead} in one walk over it. It is fed the elements and text under
+ * the {@code meiHead} in document order, from a DOM by {@link MetaDataParser} or straight from a StAX stream by
+ * {@link StreamingDocumentParser}, and routes each element to every {@link TagSpec} it matches through a table keyed
+ * by tag name.
+ * <p>
+ * The result is the same as searching the {@code meiHead} once per tag spec: the text of each matching element is
+ * trimmed and kept in document order, even when matching elements are nested.
+ * </p>
+ */
+public class MetaDataCollector {
+    /**
+     * Each tag name in {@link MetaDataParser#META_TAGS}, mapped to the field keys and specs that use it
+     */
+    private static final Map<String, List<Map.Entry<String, TagSpec>>> DISPATCH = buildDispatchTable();
+
+    /**
+     * The texts found for each field key, in document order. A slot is reserved when an element starts and filled
+     * when it ends, and left null if the element had no text.
+     */
+    private final Map<String, List<String>> texts = new HashMap<>();
+    /**
+     * The matching elements we are inside, innermost first
+     */
+    private final Deque<Capture> openCaptures = new ArrayDeque<>();
+    private int depth;
+
+    /**
+     * One matching element whose text we are gathering, and the slots it fills
+     */
+    private static final class Capture {
+        private final int depth;
+        private final StringBuilder text = new StringBuilder();
+        private final List<List<String>> targets = new ArrayList<>(1);
+        private final List<Integer> slots = new ArrayList<>(1);
+
+        private Capture(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    private static Map<String, List<Map.Entry<String, TagSpec>>> buildDispatchTable() {
+        Map<String, List<Map.Entry<String, TagSpec>>> table = new HashMap<>();
+        for (Map.Entry<String, TagSpec> entry : MetaDataParser.META_TAGS.entrySet()) {
+            table.computeIfAbsent(entry.getValue().tagName(), tag -> new ArrayList<>()).add(entry);
+        }
+        return table;
+    }
+
+    /**
+     * Called for each element under the {@code meiHead}, not for the {@code meiHead} itself
+     *
+     * @param tagName    the qualified name of the element
+     * @param attributes looks up the element's attributes by qualified name, giving null or "" if it has none
+     */
+    public void startElement(String tagName, UnaryOperator<String> attributes) {
+        depth++;
+        List<Map.Entry<String, TagSpec>> candidates = DISPATCH.get(tagName);
+        if (candidates == null) return;
+
+        Capture capture = null;
+        for (Map.Entry<String, TagSpec> candidate : candidates) {
+            TagSpec spec = candidate.getValue();
+            if (spec.attrName() != null && !spec.attrValue().equals(attributes.apply(spec.attrName()))) continue;
+
+            if (capture == null) capture = new Capture(depth);
+            List<String> fieldTexts = texts.computeIfAbsent(candidate.getKey(), key -> new ArrayList<>());
+            capture.targets.add(fieldTexts);
+            capture.slots.add(fieldTexts.size());
+            fieldTexts.add(null);
+        }
+        if (capture != null) openCaptures.push(capture);
+    }
+
+    /**
+     * Called for each run of text under the {@code meiHead}
+     */
+    public void characters(char[] text, int start, int length) {
+        for (Capture capture : openCaptures) {
+            capture.text.append(text, start, length);
+        }
+    }
+
+    /**
+     * Called for each run of text under the {@code meiHead}
+     */
+    public void characters(String text) {
+        for (Capture capture : openCaptures) {
+            capture.text.append(text);
+        }
+    }
+
+    /**
+     * Called at the end of each element passed to {@link #startElement}
+     */
+    public void endElement() {
+        Capture capture = openCaptures.peek();
+        if (capture != null && capture.depth == depth) {
+            openCaptures.pop();
+            String text = capture.text.toString().trim();
+            if (!text.isEmpty()) {
+                for (int i = 0; i < capture.targets.size(); i++) {
+                    capture.targets.get(i).set(capture.slots.get(i), text);
+                }
+            }
+        }
+        depth--;
+    }
+
+    /**
+     * Builds the metadata from what was collected. The returned map associates Elasticsearch field keys with the
+     * concatenated, lowercased texts found for them, with {@code titles} and {@code keywords} combined from the rest.
+     *
+     * @return a HashMap mapping every metadata field key to its value, null for fields with no data
+     */
+    public HashMap<String, String> getMetadata() {
+        HashMap<String, String> metadata = new HashMap<>();
+
+        // Fields are put in the order of META_TAGS, so the keywords are compiled in the order they always have been
+        for (String fieldKey : MetaDataParser.META_TAGS.keySet()) {
+            List<String> fieldTexts = texts.get(fieldKey);
+            StringBuilder value = new StringBuilder();
+            if (fieldTexts != null) {
+                for (String text : fieldTexts) {
+                    if (text == null) continue;
+                    if (!value.isEmpty()) value.append(' ');
+                    value.append(text);
+                }
+            }
+            metadata.put(fieldKey, value.isEmpty() ? null : value.toString().toLowerCase());
+        }
+
+        combineTitleFields(metadata);
+        compileKeywordsField(metadata);
+        return metadata;
+    }
+
+    /**
+     * Combines individual title-related metadata fields into a single {@code titles} entry.
+     *
+     * @param metadata the metadata map to update
+     */
+    private void combineTitleFields(HashMap<String, String> metadata) {
+        StringBuilder combinedTitles = new StringBuilder();
+
+        appendIfNotEmpty(combinedTitles, metadata.get("titles"));
+        appendIfNotEmpty(combinedTitles, metadata.get("collection_title"));
+        appendIfNotEmpty(combinedTitles, metadata.get("series_title"));
+
+        metadata.put("titles", combinedTitles.toString().trim());
+    }
+
+    /**
+     * Concatenates all non-empty metadata field values into a unified {@code keywords} entry.
+     *
+     * @param metadata the metadata map to update
+     */
+    private void compileKeywordsField(HashMap<String, String> metadata) {
+        StringBuilder keywords = new StringBuilder();
+
+        for (String value : metadata.values()) {
+            appendIfNotEmpty(keywords, value);
+        }
+
+        metadata.put("keywords", keywords.isEmpty() ? null : keywords.toString().trim());
+    }
+
+    /**
+     * Helper method to append a non-empty string to a {@link StringBuilder}, with a trailing space.
+     *
+     * @param sb    the StringBuilder to append to
+     * @param value the string to append if non-empty
+     */
+    private void appendIfNotEmpty(StringBuilder sb, String value) {
+        if (value != null && !value.trim().isEmpty()) {
+            sb.append(value).append(' ');
+        }
+    }
+}
@@ -1,22 +1,22 @@
 package parsers;
 
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
- * This class parses out all the metadata from an MEI string. It uses a static final hashmap of the tags we are searching for.
+ * This class parses out all the metadata from an MEI string. It uses a static final hashmap of the tags we are searching for,
+ * and a {@link MetaDataCollector} to find them all in one walk over the {@code meiHead}.
  */
 public class MetaDataParser {
     /**
      * Maps MEI metadata tags to their corresponding Elasticsearch field keys.
      * These tags represent various metadata elements that may appear once or multiple times in MEI documents.
      */
-    private static final Map<String, TagSpec> META_TAGS = Map.ofEntries(
+    static final Map<String, TagSpec> META_TAGS = Map.ofEntries(
             Map.entry("encoding", new TagSpec("date", "type", "encoding")),
             Map.entry("rism_id", new TagSpec("idno", "type", "RISM")),
 
@@ -69,102 +69,34 @@ public class MetaDataParser {
      */
     public HashMap<String, String> getDataFromElement(Element meiHead) {
 //        System.out.println("(getDataFromEl): "+DocumentParser.elementToString(meiHead));
-        HashMap<String, String> metadata = new HashMap<>();
-
-        for (Map.Entry<String, TagSpec> entry : META_TAGS.entrySet()) {
-            String fieldKey = entry.getKey();
-            TagSpec spec = entry.getValue();
-
-            List<String> values = getTextContentForTag(spec, meiHead);
-
-            if (!values.isEmpty()) {
-                metadata.put(fieldKey, String.join(" ", values).toLowerCase());
-            } else {
-                metadata.put(fieldKey, null);
-            }
-        }
-
-        combineTitleFields(metadata);
-        compileKeywordsField(metadata);
-        return metadata;
+        MetaDataCollector collector = new MetaDataCollector();
+        walkChildren(meiHead, collector);
+        return collector.getMetadata();
     }
 
     /**
-     * Extracts the trimmed text content of all {@link Element} nodes under the given {@code root}
-     * that match a tag specification defined by {@link TagSpec}. This includes an optional attribute
-     * name and value filter, where only elements with matching attribute values are considered.
-     *
-     * <p>For each matching element, its text content is retrieved via {@link Element#getTextContent()},
-     * trimmed, and included in the result list if non-empty.</p>
+     * Feeds everything under a node to the collector, in document order. Only text and CDATA count as text, as with
+     * {@link Node#getTextContent()}.
      *
-     * @param spec the {@link TagSpec} defining the tag name and optional attribute filter
-     * @param root the root {@link Element} under which to search for matching elements
-     * @return a list of non-empty, trimmed text contents of matching elements
+     * @param parent    the node whose children we are walking
+     * @param collector the collector we are feeding
      */
-    private List<String> getTextContentForTag(TagSpec spec, Element root) {
-        List<String> result = new ArrayList<>();
-        NodeList elements = root.getElementsByTagName(spec.tagName());
-
-        for (int i = 0; i < elements.getLength(); i++) {
-            Element elem = (Element) elements.item(i);
-
-            if (spec.attrName() != null) {
-                String attrVal = elem.getAttribute(spec.attrName());
-                if (!spec.attrValue().equals(attrVal)) {
-                    continue; // skip non-matching attributes
+    private void walkChildren(Node parent, MetaDataCollector collector) {
+        NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE -> {
+                    Element element = (Element) child;
+                    collector.startElement(element.getTagName(), element::getAttribute);
+                    walkChildren(element, collector);
+                    collector.endElement();
+                }
+                case Node.TEXT_NODE, Node.CDATA_SECTION_NODE -> collector.characters(child.getNodeValue());
+                case Node.ENTITY_REFERENCE_NODE -> walkChildren(child, collector);
+                default -> {
                 }
             }
-
-            String text = elem.getTextContent().trim();
-            if (!text.isEmpty()) {
-                result.add(text);
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * Combines individual title-related metadata fields into a single {@code titles} entry.
-     *
-     * @param metadata the metadata map to update
-     */
-    private void combineTitleFields(HashMap<String, String> metadata) {
-        StringBuilder combinedTitles = new StringBuilder();
-
-        appendIfNotEmpty(combinedTitles, metadata.get("titles"));
-        appendIfNotEmpty(combinedTitles, metadata.get("collection_title"));
-        appendIfNotEmpty(combinedTitles, metadata.get("series_title"));
-
-        metadata.put("titles", combinedTitles.toString().trim());
-    }
-
-    /**
-     * Concatenates all non-empty metadata field values into a unified {@code keywords} entry.
-     *
-     * @param metadata the metadata map to update
-     */
-    private void compileKeywordsField(HashMap<String, String> metadata) {
-        StringBuilder keywords = new StringBuilder();
-
-        for (String value : metadata.values()) {
-            appendIfNotEmpty(keywords, value);
         }
-
-        metadata.put("keywords", keywords.isEmpty() ? null : keywords.toString().trim());
     }
-
-    /**
-     * Helper method to append a non-empty string to a {@link StringBuilder}, with a trailing space.
-     *
-     * @param sb    the StringBuilder to append to
-     * @param value the string to append if non-empty
-     */
-    private void appendIfNotEmpty(StringBuilder sb, String value) {
-        if (value != null && !value.trim().isEmpty()) {
-            sb.append(value).append(' ');
-        }
-    }
-
 }
-
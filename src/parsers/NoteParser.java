@@ -26,6 +26,26 @@ public class NoteParser {
         );
     }
 
+    /**
+     * Makes a note from the raw attribute values of a note element, for parsers that read MEI without building a DOM.
+     * The values are interpreted exactly as {@link #getNoteFromElement} interprets the element's attributes.
+     *
+     * @param pname      the {@code pname} attribute, null if absent
+     * @param accidental the accidental, from the {@code accid} attribute or an {@code <accid>} child, null if none
+     * @param oct        the {@code oct} attribute, null if absent
+     * @param dur        the {@code dur} attribute, null if absent
+     * @param dots       the {@code dots} attribute, null if absent
+     * @return A {@link Note} that represents the mei element.
+     */
+    public Note getNoteFromAttributes(String pname, String accidental, String oct, String dur, String dots) {
+        return new Note(
+                getPitch(pname),
+                accidental,
+                Integer.parseInt(oct),
+                getDuration(dur, dots)
+        );
+    }
+
     /**
      * This function takes in a mei note element and returns a pitch name
      *
@@ -33,7 +53,11 @@ public class NoteParser {
      * @return the char of the pitch, 'a' through 'g'.
      */
     public char getPitchFromElement(Element noteElement) {
-        return noteElement.getAttribute("pname").charAt(0);
+        return getPitch(noteElement.getAttribute("pname"));
+    }
+
+    private char getPitch(String pname) {
+        return ((pname == null) ? "" : pname).charAt(0);
     }
 
     /**
@@ -77,40 +101,50 @@ public class NoteParser {
      * @return the total duration
      */
     public Float getDurationFromElement(Element noteElement) {
-        Integer dur = getRawDurationFromElement(noteElement);
+        return getDuration(
+                noteElement.hasAttribute("dur") ? noteElement.getAttribute("dur") : null,
+                noteElement.hasAttribute("dots") ? noteElement.getAttribute("dots") : null
+        );
+    }
+
+    /**
+     * The total duration from the raw {@code dur} and {@code dots} attributes, null if absent
+     */
+    private Float getDuration(String durAttribute, String dotsAttribute) {
+        Integer dur = getRawDuration(durAttribute);
         if (dur == null) return null;
-        int dots = getDotsFromElement(noteElement);
+        int dots = getDots(dotsAttribute);
         return (dots == 0) ? dur : dur * (1 + getDotValueAdded(dots));
     }
 
     /**
-     * This function takes in a mei note element and returns the raw duration, which is how many fit in a measure
+     * This function takes in the dur attribute of a mei note and returns the raw duration, which is how many fit in a measure
      *
-     * @param noteElement the element in mei format: "<note> ... </note>"
+     * @param durAttribute the attribute value, null if the note has none
      * @return the duration encoded
      */
-    private Integer getRawDurationFromElement(Element noteElement) {
-        if (!noteElement.hasAttribute("dur")) return null;
+    private Integer getRawDuration(String durAttribute) {
+        if (durAttribute == null) return null;
         try {
-            return Integer.parseInt(noteElement.getAttribute("dur"));
+            return Integer.parseInt(durAttribute);
         } catch (NumberFormatException ex) {
-            System.out.println("Invalid dur attribute: " + noteElement.getAttribute("dur"));
+            System.out.println("Invalid dur attribute: " + durAttribute);
             return null;
         }
     }
 
     /**
-     * This function takes in a mei note noteElement and returns the number of dots, if any
+     * This function takes in the dots attribute of a mei note and returns the number of dots, if any
      *
-     * @param noteElement the element in mei format: "<note> ... </note>"
+     * @param dotsAttribute the attribute value, null if the note has none
      * @return the number of dots
      */
-    private int getDotsFromElement(Element noteElement) {
-        if (!noteElement.hasAttribute("dots")) return 0;
+    private int getDots(String dotsAttribute) {
+        if (dotsAttribute == null) return 0;
         try {
-            return Integer.parseInt(noteElement.getAttribute("dots"));
+            return Integer.parseInt(dotsAttribute);
         } catch (NumberFormatException ex) {
-            System.out.println("Invalid dots attribute: " + noteElement.getAttribute("dots"));
+            System.out.println("Invalid dots attribute: " + dotsAttribute);
             return 0;
         }
     }
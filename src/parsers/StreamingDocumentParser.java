@@ -0,0 +1,389 @@
+package parsers;
+
+import music.Chord;
+import music.Document;
+import music.IntervalBuilder;
+import music.KeySig;
+import music.Measure;
+import music.Note;
+import music.PackedNote;
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class parses MEI into a {@link Document} in one forward pass with StAX, without ever building a DOM of the
+ * music. It is for callers that only need the intervals, measure map, and metadata, like indexing and searching.
+ * <p>
+ * The result is the same as {@link DocumentParser#getDocumentFromFile()} gives for the same MEI: key signatures and
+ * accidentals are tracked inline, and only the measure before the current one is held, so memory does not grow
+ * with the length of the piece beyond the output arrays. The {@code meiHead} is fed straight to a
+ * {@link MetaDataCollector} as it streams by.
+ * </p>
+ */
+public class StreamingDocumentParser {
+
+    private final NoteParser noteParser;
+    private final KeySigParser keySigParser;
+
+    public StreamingDocumentParser() {
+        this.noteParser = new NoteParser();
+        this.keySigParser = new KeySigParser();
+    }
+
+    /**
+     * Parses MEI text, e.g. a {@link java.io.StringReader} over MEI we already hold as a String. The reader is not
+     * closed.
+     *
+     * @param reader the reader of MEI text
+     * @return the parsed document, empty if the MEI is not well-formed
+     */
+    public Document parse(Reader reader) {
+        try {
+            return parse(XmlFactories.newStreamReader(reader));
+        } catch (XMLStreamException e) {
+            return malformed(e);
+        }
+    }
+
+    /**
+     * Parses a stream of encoded MEI, decoded as its XML declaration says. The stream is not closed.
+     *
+     * @param stream the stream of encoded MEI
+     * @return the parsed document, empty if the MEI is not well-formed
+     */
+    public Document parse(InputStream stream) {
+        try {
+            return parse(XmlFactories.newStreamReader(stream));
+        } catch (XMLStreamException e) {
+            return malformed(e);
+        }
+    }
+
+    /**
+     * Parses encoded MEI held in memory.
+     *
+     * @param bytes the encoded MEI, in the encoding of its XML declaration (UTF-8 if it has none)
+     * @return the parsed document, empty if the MEI is not well-formed
+     */
+    public Document parse(byte[] bytes) {
+        return parse(new ByteArrayInputStream(bytes));
+    }
+
+    private Document parse(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            return new Pass(reader).run();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The DOM parser can't parse what is not well-formed at all, and so finds no measures and no metadata. Neither
+     * do we, even if the problem is only found part way through.
+     */
+    private static Document malformed(XMLStreamException e) {
+        System.out.println("Could not parse MEI: " + e.getMessage());
+        return new Document(new int[0], new int[0], new HashMap<>());
+    }
+
+    /**
+     * The state of one pass over one MEI source. Depths are element depths, the root element being 1; -1 means
+     * "not inside one".
+     */
+    private final class Pass {
+        private final XMLStreamReader reader;
+        private int depth;
+
+        // The document as a whole
+        private KeySig keySig = KeySig.of("0");
+        private boolean measuresStopped;
+        private final IntervalBuilder intervals = new IntervalBuilder();
+
+        // The measure being read
+        private int measureDepth = -1;
+        private long[] noteRep = new long[16];
+        private int noteCount;
+        private final List<String[]> pendingKeySigs = new ArrayList<>();
+        private final AccidentalTracker accidentalTracker = new AccidentalTracker();
+        private boolean staffFound;
+        private int staffDepth = -1;
+        private boolean layerFound;
+        private int layerDepth = -1;
+        private int beamDepth = -1;
+        private int chordDepth = -1;
+        private List<Note> chordNotes;
+
+        // The note being read
+        private int noteDepth = -1;
+        private String pname, oct, dur, dots, accidental;
+        private boolean accidentalFound;
+
+        // The first meiHead, fed to a collector for its metadata
+        private MetaDataCollector metaData;
+        private int headDepth = -1;
+
+        private Pass(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        private Document run() throws XMLStreamException {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        depth++;
+                        startElement(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        endElement();
+                        depth--;
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                        if (headDepth != -1) {
+                            metaData.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+
+            intervals.finish();
+            return new Document(intervals.getIntervals(), intervals.getMeasureMap(), getMetadata());
+        }
+
+        private void startElement(String name) {
+            if (headDepth != -1) {
+                metaData.startElement(name, this::attribute);
+            } else if (metaData == null && name.equals("meiHead")) {
+                metaData = new MetaDataCollector();
+                headDepth = depth;
+            }
+
+            if (measuresStopped) return;
+            boolean keySigElement = isKeySig(name);
+            if (keySigElement) {
+                String[] sigs = {attribute("sig"), attribute("keysig"), attribute("key.sig")};
+                if (measureDepth == -1) {
+                    applyKeySig(sigs);
+                } else {
+                    // The DOM parser reads a measure before anything in it, so its key signatures apply after it
+                    pendingKeySigs.add(sigs);
+                }
+            }
+
+            if (measureDepth != -1) {
+                startInMeasure(name);
+            } else if (!keySigElement && !measuresStopped && name.equalsIgnoreCase("measure")) {
+                startMeasure();
+            }
+        }
+
+        private void endElement() {
+            if (depth == headDepth) {
+                headDepth = -1;
+            } else if (headDepth != -1) {
+                metaData.endElement();
+            }
+
+            if (measureDepth == -1 || measuresStopped) return;
+            if (depth == noteDepth) {
+                try {
+                    endNote();
+                } catch (RuntimeException e) {
+                    stopMeasures(e);
+                }
+            } else if (depth == chordDepth) {
+                chordDepth = -1;
+                try {
+                    addToMeasure(PackedNote.of(new Chord(chordNotes), keySig));
+                } catch (RuntimeException e) {
+                    stopMeasures(e); // A chord without notes has no top note
+                }
+            } else if (depth == beamDepth) {
+                beamDepth = -1;
+            } else if (depth == layerDepth) {
+                layerDepth = -1; // Nothing after the first layer is read
+            } else if (depth == staffDepth) {
+                staffDepth = -1; // Nor anything after the first staff
+            } else if (depth == measureDepth) {
+                endMeasure();
+            }
+        }
+
+        /**
+         * Only the first staff of a measure, and the first layer of that staff, is read. Notes, chords, and beams
+         * are read straight from the layer, notes and chords from a beam, and notes from a chord.
+         */
+        private void startInMeasure(String name) {
+            if (noteDepth != -1) {
+                // Inside a note, we only care for the first <accid> it holds
+                if (!accidentalFound && name.equals("accid")) {
+                    accidentalFound = true;
+                    accidental = attribute("accid");
+                }
+                return;
+            }
+
+            if (!staffFound) {
+                if (name.equals("staff")) {
+                    staffFound = true;
+                    staffDepth = depth;
+                }
+            } else if (!layerFound) {
+                if (name.equals("layer") && staffDepth != -1 && depth > staffDepth) {
+                    layerFound = true;
+                    layerDepth = depth;
+                }
+            } else if (layerDepth != -1) {
+                int parentDepth = depth - 1;
+                if (parentDepth == chordDepth) {
+                    if (name.equals("note")) startNote();
+                } else if (parentDepth == beamDepth || parentDepth == layerDepth) {
+                    switch (name) {
+                        case "note" -> startNote();
+                        case "chord" -> {
+                            chordDepth = depth;
+                            chordNotes = new ArrayList<>();
+                        }
+                        case "beam" -> {
+                            if (parentDepth == layerDepth) beamDepth = depth;
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            }
+        }
+
+        private void startMeasure() {
+            measureDepth = depth;
+            noteCount = 0;
+            accidentalTracker.clear();
+            staffFound = false;
+            staffDepth = -1;
+            layerFound = false;
+            layerDepth = -1;
+        }
+
+        private void startNote() {
+            noteDepth = depth;
+            pname = attribute("pname");
+            oct = attribute("oct");
+            dur = attribute("dur");
+            dots = attribute("dots");
+            accidental = attribute("accid");
+            accidentalFound = accidental != null;
+        }
+
+        private void endNote() {
+            noteDepth = -1;
+            Note note = noteParser.getNoteFromAttributes(pname, accidental, oct, dur, dots);
+            if (chordDepth != -1) {
+                chordNotes.add(updatedNoteFromAccidentalTracker(note));
+            } else {
+                addToMeasure(PackedNote.of(updatedNoteFromAccidentalTracker(note), keySig));
+            }
+        }
+
+        private void addToMeasure(long packedNote) {
+            if (noteCount == noteRep.length) noteRep = Arrays.copyOf(noteRep, noteCount * 2);
+            noteRep[noteCount++] = packedNote;
+        }
+
+        /**
+         * As {@link MeasureParser} does, tracks a note's accidental, or gives it the one tracked for its pitch.
+         */
+        private Note updatedNoteFromAccidentalTracker(Note n) {
+            if (n.getAccidental() != null) {
+                accidentalTracker.modifyAccidentalMap(n.getPitch(), n.getAccidental());
+            } else {
+                n = n.applyAccidental(accidentalTracker.getCurrentAccidentalOfPitch(n.getPitch()));
+            }
+            return n;
+        }
+
+        private void endMeasure() {
+            measureDepth = -1;
+            staffDepth = -1;
+            layerDepth = -1;
+            Measure measure = new Measure(keySig, Arrays.copyOf(noteRep, noteCount));
+
+            intervals.addMeasure(measure);
+            for (String[] sigs : pendingKeySigs) {
+                applyKeySig(sigs);
+                if (measuresStopped) break;
+            }
+            pendingKeySigs.clear();
+        }
+
+        private void applyKeySig(String[] sigs) {
+            try {
+                keySig = keySigParser.getKeySigFromAttributes(sigs[0], sigs[1], sigs[2]);
+            } catch (RuntimeException e) {
+                stopMeasures(e);
+            }
+        }
+
+        /**
+         * Like the DOM parser, a bad measure or key signature ends the music: what was read before it is kept, and
+         * the rest of the source is only read for metadata.
+         */
+        private void stopMeasures(RuntimeException e) {
+            System.out.println("Exception while streaming measures: " + e);
+            measuresStopped = true;
+            measureDepth = -1;
+            noteDepth = -1;
+            chordDepth = -1;
+            beamDepth = -1;
+            pendingKeySigs.clear();
+        }
+
+        private HashMap<String, String> getMetadata() {
+            if (metaData == null) {
+                System.out.println("No meiHead tags found");
+                return new HashMap<>();
+            }
+            try {
+                return metaData.getMetadata();
+            } catch (Exception e) {
+                System.out.println("Exception in getMetadata: " + e);
+                return new HashMap<>();
+            }
+        }
+
+        /**
+         * The value of the current element's attribute with the given qualified name, null if it has none. We match
+         * qualified names, not local names, as the DOM parser does.
+         */
+        private String attribute(String name) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (name.equals(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)))) {
+                    return reader.getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @see DocumentParser#hasOrIsKeySigElement(Element)
+         */
+        private boolean isKeySig(String name) {
+            String tagName = name.toLowerCase();
+            return (tagName.contains("key") && tagName.contains("sig")) || attribute("key.sig") != null || attribute("keysig") != null;
+        }
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+    }
+}
@@ -0,0 +1,293 @@
+package parsers;
+
+import org.w3c.dom.Node;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one place the parsers get their XML machinery from. The JAXP factories are looked up once, and the
+ * {@link DocumentBuilder DocumentBuilders} and {@link Transformer Transformers} they make are pooled and reused, so
+ * parsing or serializing a measure costs neither a service lookup nor a fresh builder.
+ * <p>
+ * Builders and transformers aren't thread-safe, so each is only ever used by the one caller that borrowed it. The
+ * pools are shared rather than thread-local: our handlers run on virtual threads, which are made per request and
+ * never reused, so a thread-local would make a new one per request all the same.
+ * </p>
+ * <p>
+ * Everything is made under one of two {@link Profile Profiles}, picked with the {@code MEI_XML_PROFILE} environment
+ * variable. The default, {@link Profile#HARDENED hardened}, never touches the network or the filesystem for an MEI
+ * file's sake: whatever DOCTYPE a file declares, no external DTD, schema, entity, or XInclude is loaded, and entity
+ * expansion is held to a small budget, so parse time only depends on the file itself.
+ * </p>
+ */
+public final class XmlFactories {
+
+    /**
+     * How hard the DOM parser checks what it is given
+     */
+    public enum Profile {
+        /**
+         * Nothing outside the file is loaded, and nothing is validated
+         */
+        HARDENED,
+        /**
+         * The DOM parser validates against the DTD a file declares, and a file that fails validation fails to
+         * parse. The DTD may only be loaded from the local filesystem, never the network. StAX can't validate, so
+         * the streaming parser stays hardened.
+         */
+        STRICT
+    }
+
+    /**
+     * The profile every factory is made under, from {@code MEI_XML_PROFILE} ({@code hardened} or {@code strict})
+     */
+    public static final Profile PROFILE = "strict".equalsIgnoreCase(System.getenv("MEI_XML_PROFILE"))
+            ? Profile.STRICT : Profile.HARDENED;
+
+    /**
+     * How many entity references a file may expand in total, and how many characters they may expand to. Real MEI
+     * needs none beyond the predefined ones, so these are only there to fail fast on entity bombs.
+     */
+    private static final String ENTITY_EXPANSION_LIMIT = "64";
+    private static final String TOTAL_ENTITY_SIZE_LIMIT = "65536";
+    private static final String ENTITY_EXPANSION_LIMIT_PROPERTY = "jdk.xml.entityExpansionLimit";
+    private static final String TOTAL_ENTITY_SIZE_LIMIT_PROPERTY = "jdk.xml.totalEntitySizeLimit";
+
+    /**
+     * How many idle builders, and how many idle transformers, are kept. More than this are made as needed and dropped.
+     */
+    private static final int MAX_IDLE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final DocumentBuilderFactory BUILDER_FACTORY = newBuilderFactory();
+    private static final TransformerFactory TRANSFORMER_FACTORY = newTransformerFactory();
+    private static final XMLInputFactory INPUT_FACTORY = newInputFactory();
+
+    private static final Queue<DocumentBuilder> IDLE_BUILDERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger IDLE_BUILDER_COUNT = new AtomicInteger();
+    private static final Queue<Transformer> IDLE_TRANSFORMERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger IDLE_TRANSFORMER_COUNT = new AtomicInteger();
+
+    /**
+     * Any external entity or DTD is read as if it were empty, rather than fetched
+     */
+    private static final EntityResolver NO_EXTERNAL_ENTITIES = (publicId, systemId) -> new InputSource(new StringReader(""));
+
+    /**
+     * Validation errors only fail a parse if the error handler says so; by default they are just printed
+     */
+    private static final ErrorHandler FAIL_ON_ERROR = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException exception) {
+        }
+
+        @Override
+        public void error(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+    };
+
+    private XmlFactories() {
+    }
+
+    private static DocumentBuilderFactory newBuilderFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true); // MEI uses namespaces
+        factory.setXIncludeAware(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", PROFILE == Profile.STRICT);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("XML parser can't be hardened", e);
+        }
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, (PROFILE == Profile.STRICT) ? "file" : "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        factory.setAttribute(ENTITY_EXPANSION_LIMIT_PROPERTY, ENTITY_EXPANSION_LIMIT);
+        factory.setAttribute(TOTAL_ENTITY_SIZE_LIMIT_PROPERTY, TOTAL_ENTITY_SIZE_LIMIT);
+        factory.setValidating(PROFILE == Profile.STRICT);
+        return factory;
+    }
+
+    private static TransformerFactory newTransformerFactory() {
+        TransformerFactory factory = TransformerFactory.newInstance();
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException("XML transformer can't be hardened", e);
+        }
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        return factory;
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        factory.setProperty(ENTITY_EXPANSION_LIMIT_PROPERTY, ENTITY_EXPANSION_LIMIT);
+        factory.setProperty(TOTAL_ENTITY_SIZE_LIMIT_PROPERTY, TOTAL_ENTITY_SIZE_LIMIT);
+        // An external DTD is read as if it were empty, rather than fetched
+        factory.setXMLResolver((publicId, systemId, baseUri, namespace) -> InputStream.nullInputStream());
+        return factory;
+    }
+
+    /**
+     * Parses a file into a DOM document
+     *
+     * @param file the XML file
+     * @return the parsed document
+     */
+    public static org.w3c.dom.Document parse(File file) throws ParserConfigurationException, SAXException, IOException {
+        DocumentBuilder builder = borrowBuilder();
+        try {
+            return builder.parse(file);
+        } finally {
+            returnBuilder(builder);
+        }
+    }
+
+    /**
+     * Parses XML from an input source into a DOM document
+     *
+     * @param source the XML source
+     * @return the parsed document
+     */
+    public static org.w3c.dom.Document parse(InputSource source) throws ParserConfigurationException, SAXException, IOException {
+        DocumentBuilder builder = borrowBuilder();
+        try {
+            return builder.parse(source);
+        } finally {
+            returnBuilder(builder);
+        }
+    }
+
+    /**
+     * @return a new, empty DOM document to build into
+     */
+    public static org.w3c.dom.Document newDocument() throws ParserConfigurationException {
+        DocumentBuilder builder = borrowBuilder();
+        try {
+            return builder.newDocument();
+        } finally {
+            returnBuilder(builder);
+        }
+    }
+
+    /**
+     * Serializes a node, and everything in it, to XML
+     *
+     * @param node               the node to serialize
+     * @param omitXmlDeclaration whether to leave out the {@code <?xml ...?>} declaration
+     * @return the XML of the node
+     */
+    public static String serialize(Node node, boolean omitXmlDeclaration) throws TransformerException {
+        Transformer transformer = borrowTransformer();
+        try {
+            if (omitXmlDeclaration) transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            StringWriter writer = new StringWriter();
+            transformer.transform(new DOMSource(node), new StreamResult(writer));
+            return writer.toString();
+        } finally {
+            returnTransformer(transformer);
+        }
+    }
+
+    /**
+     * Opens a StAX reader over MEI text. The reader underneath is not closed with it.
+     */
+    public static XMLStreamReader newStreamReader(Reader reader) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(reader);
+    }
+
+    /**
+     * Opens a StAX reader over encoded MEI, decoded as its XML declaration says. The stream is not closed with it.
+     */
+    public static XMLStreamReader newStreamReader(InputStream stream) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(stream);
+    }
+
+    private static DocumentBuilder borrowBuilder() throws ParserConfigurationException {
+        DocumentBuilder builder = IDLE_BUILDERS.poll();
+        if (builder == null) {
+            // JAXP doesn't promise factories are thread-safe, and this is off the hot path once the pool is warm
+            synchronized (BUILDER_FACTORY) {
+                builder = BUILDER_FACTORY.newDocumentBuilder();
+            }
+        } else {
+            IDLE_BUILDER_COUNT.decrementAndGet();
+        }
+        // reset() clears these, so they are set on every borrow
+        if (PROFILE == Profile.STRICT) {
+            builder.setErrorHandler(FAIL_ON_ERROR);
+        } else {
+            builder.setEntityResolver(NO_EXTERNAL_ENTITIES);
+        }
+        return builder;
+    }
+
+    private static void returnBuilder(DocumentBuilder builder) {
+        builder.reset();
+        if (IDLE_BUILDER_COUNT.incrementAndGet() <= MAX_IDLE) {
+            IDLE_BUILDERS.offer(builder);
+        } else {
+            IDLE_BUILDER_COUNT.decrementAndGet();
+        }
+    }
+
+    private static Transformer borrowTransformer() throws TransformerConfigurationException {
+        Transformer transformer = IDLE_TRANSFORMERS.poll();
+        if (transformer == null) {
+            synchronized (TRANSFORMER_FACTORY) {
+                return TRANSFORMER_FACTORY.newTransformer();
+            }
+        }
+        IDLE_TRANSFORMER_COUNT.decrementAndGet();
+        return transformer;
+    }
+
+    private static void returnTransformer(Transformer transformer) {
+        transformer.reset();
+        if (IDLE_TRANSFORMER_COUNT.incrementAndGet() <= MAX_IDLE) {
+            IDLE_TRANSFORMERS.offer(transformer);
+        } else {
+            IDLE_TRANSFORMER_COUNT.decrementAndGet();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package serverCode.Handlers;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -9,23 +10,41 @@ import serverCode.Responses.BASE_RESPONSE;
 
 import java.io.*;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import static java.net.HttpURLConnection.HTTP_BAD_METHOD;
 import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
+import static java.net.HttpURLConnection.HTTP_OK;
 
 /**
  * Abstract base handler for all HTTP request handlers.
  * Provides utility methods for parsing requests, validating HTTP methods and endpoints,
  * sending JSON responses, and authenticating requests.
+ * <p>
+ * A single handler instance serves every exchange on its context, possibly at the same time on different threads.
+ * Handlers must therefore keep all per-request state in local variables, never in fields.
+ * </p>
  */
 public abstract class BASE_HANDLER implements HttpHandler {
 
     protected static final String CHAR_SET = "UTF-8";
+    /**
+     * Size of the character buffer between the JSON writer and the response body. This, not the size of the
+     * response, bounds how much of a response is held in memory at once.
+     */
+    private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
+    /**
+     * Responses smaller than this many bytes are sent uncompressed, even if the client accepts compression
+     */
+    private static final int COMPRESSION_THRESHOLD = 1024;
 
-    protected String reqBody;
-    protected Gson gson = new GsonBuilder().serializeNulls().create();
-    protected InputStream is;
-    protected OutputStream os;
+    /**
+     * Gson instances are immutable and thread-safe, so every handler shares this one.
+     */
+    protected static final Gson gson = new GsonBuilder().serializeNulls().create();
 
     /**
      * Writes a string to an output stream.
@@ -50,26 +69,71 @@ public abstract class BASE_HANDLER implements HttpHandler {
      * @throws IOException if reading from the input stream fails.
      */
     public <T> T getRequest(HttpExchange exchange, Class<T> type) throws IOException {
-        is = exchange.getRequestBody();
-        reqBody = readString(is);
-        return gson.fromJson(reqBody, type);
+        try (InputStream is = exchange.getRequestBody()) {
+            return gson.fromJson(readString(is), type);
+        }
     }
 
     /**
      * Sends a JSON response to the client.
      *
+     * <p>The response is serialized straight into the response body with a {@link JsonWriter}, and sent with
+     * chunked transfer encoding. This way a large response (e.g. thousands of search hits) is never held in
+     * memory as a whole string or byte array, and the client starts receiving it while it is still being written.
+     * The body is compressed when the client's {@code Accept-Encoding} allows it, see {@link CompressingResponseStream}.
+     *
      * @param response The response object to send.
      * @param exchange The HTTP exchange object.
      * @param httpCode The HTTP status code.
      * @throws IOException if writing to the output stream fails.
      */
     public void sendResponse(BASE_RESPONSE response, HttpExchange exchange, int httpCode) throws IOException {
-        String responseString = gson.toJson(response);
-        byte[] encodedResponse = responseString.getBytes(CHAR_SET);
-        exchange.sendResponseHeaders(httpCode, encodedResponse.length);
-        os = exchange.getResponseBody();
-        os.write(encodedResponse);
-        os.close();
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=" + CHAR_SET);
+        OutputStream body = new CompressingResponseStream(exchange, httpCode, COMPRESSION_THRESHOLD);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(body, CHAR_SET), RESPONSE_BUFFER_SIZE);
+             JsonWriter jsonWriter = gson.newJsonWriter(writer)) {
+            if (response == null) {
+                jsonWriter.nullValue();
+            } else {
+                gson.toJson(response, response.getClass(), jsonWriter);
+            }
+        }
+    }
+
+    /**
+     * Completes an exchange from a future, without blocking the thread that calls this method. Once the future is
+     * done, the response is sent with {@code HTTP_OK} if it is successful and {@code HTTP_INTERNAL_ERROR} otherwise.
+     *
+     * <p>The response is written on the server's executor rather than on whichever thread completed the future,
+     * which is usually an Elasticsearch IO thread that must not be held up by serialization.
+     *
+     * @param future   The future of the response to send.
+     * @param exchange The HTTP exchange object, left open until the future is done, and closed even if the response
+     *                 can't be sent.
+     */
+    public void sendResponseAsync(CompletableFuture<? extends BASE_RESPONSE> future, HttpExchange exchange) {
+        future.whenCompleteAsync((response, ex) -> {
+            try {
+                if (ex != null) {
+                    sendResponse(new BASE_RESPONSE(ex.toString(), false), exchange, HTTP_INTERNAL_ERROR);
+                } else {
+                    sendResponse(response, exchange, (response != null && response.isSuccess()) ? HTTP_OK : HTTP_INTERNAL_ERROR);
+                }
+            } catch (Throwable e) {
+                // Anything thrown here would be swallowed by the future, leaving the client waiting on the exchange
+                System.out.println("Couldn't send async response: " + e);
+                exchange.close();
+            }
+        }, responseExecutor(exchange));
+    }
+
+    /**
+     * @param exchange The HTTP exchange object.
+     * @return the executor the server dispatches exchanges on, or the common pool if it has none
+     */
+    private static Executor responseExecutor(HttpExchange exchange) {
+        Executor executor = exchange.getHttpContext().getServer().getExecutor();
+        return (executor != null) ? executor : ForkJoinPool.commonPool();
     }
 
     /**
@@ -0,0 +1,182 @@
+package serverCode.Handlers;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The output stream every handler writes its response body to. It negotiates gzip or deflate compression from the
+ * request's {@code Accept-Encoding} header, and delays sending the response headers until it knows whether
+ * compressing is worth it.
+ * <p>
+ * The first {@code threshold} bytes are buffered. If the response ends within them, it is sent uncompressed with a
+ * fixed {@code Content-Length}, as compressing a tiny body costs more than it saves. Once the threshold is passed,
+ * the headers are sent with chunked transfer encoding and everything after is compressed on the fly, so large
+ * responses are still streamed rather than held in memory.
+ * </p>
+ */
+class CompressingResponseStream extends OutputStream {
+
+    /**
+     * The content codings we know how to produce, in order of preference
+     */
+    enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate"),
+        IDENTITY("identity");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+    }
+
+    private static final int ENCODER_BUFFER_SIZE = 8 * 1024;
+
+    private final HttpExchange exchange;
+    private final int httpCode;
+    private final Encoding encoding;
+    /**
+     * Holds the start of the body until we know whether it passes the threshold. Null once committed.
+     */
+    private byte[] buffer;
+    private int count;
+    /**
+     * The stream the body is really written to. Null until the headers are sent.
+     */
+    private OutputStream out;
+    private boolean closed;
+
+    /**
+     * @param exchange  the exchange we are responding to
+     * @param httpCode  the HTTP status code to send
+     * @param threshold the body size in bytes under which compression is skipped. A threshold of 0 sends the
+     *                  headers on the first write, which is what streamed responses want.
+     */
+    CompressingResponseStream(HttpExchange exchange, int httpCode, int threshold) {
+        this.exchange = exchange;
+        this.httpCode = httpCode;
+        this.encoding = negotiateEncoding(exchange.getRequestHeaders());
+        this.buffer = new byte[threshold];
+        exchange.getResponseHeaders().add("Vary", "Accept-Encoding");
+    }
+
+    /**
+     * Picks the encoding with the highest quality value in an {@code Accept-Encoding} header, preferring gzip over
+     * deflate on ties. Codings with {@code q=0} are refused, and {@code *} only stands for the codings the header
+     * doesn't list itself, as per RFC 9110.
+     *
+     * @param requestHeaders the request headers
+     * @return the encoding to respond with, {@link Encoding#IDENTITY} if the client accepts neither
+     */
+    static Encoding negotiateEncoding(Headers requestHeaders) {
+        String acceptEncoding = requestHeaders.getFirst("Accept-Encoding");
+        if (acceptEncoding == null || acceptEncoding.isBlank()) return Encoding.IDENTITY;
+
+        // Null until the header lists the coding
+        Double gzipQuality = null;
+        Double deflateQuality = null;
+        Double anyQuality = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase();
+            double quality = parseQuality(params);
+
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzipQuality = (gzipQuality == null) ? quality : Math.max(gzipQuality, quality);
+                case "deflate" -> deflateQuality = (deflateQuality == null) ? quality : Math.max(deflateQuality, quality);
+                case "*" -> anyQuality = (anyQuality == null) ? quality : Math.max(anyQuality, quality);
+                default -> {
+                }
+            }
+        }
+
+        double gzip = (gzipQuality != null) ? gzipQuality : (anyQuality != null) ? anyQuality : 0.0;
+        double deflate = (deflateQuality != null) ? deflateQuality : (anyQuality != null) ? anyQuality : 0.0;
+        if (gzip <= 0.0 && deflate <= 0.0) return Encoding.IDENTITY;
+        return (gzip >= deflate) ? Encoding.GZIP : Encoding.DEFLATE;
+    }
+
+    /**
+     * Reads the {@code q} parameter of one {@code Accept-Encoding} entry, defaulting to 1.
+     */
+    private static double parseQuality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException ex) {
+                    return 0.0;
+                }
+            }
+        }
+        return 1.0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Response body already closed");
+        if (out == null) {
+            if (count + len <= buffer.length) {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+                return;
+            }
+            commit(encoding);
+        }
+        out.write(b, off, len);
+    }
+
+    /**
+     * Flushes already-compressed data to the client. While the body is still under the threshold there is nothing
+     * to flush, as the headers have not been sent yet.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out != null) out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (out == null) {
+            // The whole body fit under the threshold, so we know its exact length
+            exchange.sendResponseHeaders(httpCode, (count == 0) ? -1 : count);
+            out = exchange.getResponseBody();
+            out.write(buffer, 0, count);
+            buffer = null;
+        }
+        out.close();
+    }
+
+    /**
+     * Sends the response headers for a chunked body in the given encoding, and writes out what we have buffered.
+     */
+    private void commit(Encoding chosen) throws IOException {
+        if (chosen != Encoding.IDENTITY) {
+            exchange.getResponseHeaders().set("Content-Encoding", chosen.token);
+        }
+        exchange.sendResponseHeaders(httpCode, 0); // 0 means chunked
+
+        OutputStream body = exchange.getResponseBody();
+        out = switch (chosen) {
+            case GZIP -> new GZIPOutputStream(body, ENCODER_BUFFER_SIZE, true);
+            case DEFLATE -> new DeflaterOutputStream(body, true);
+            case IDENTITY -> body;
+        };
+        out.write(buffer, 0, count);
+        buffer = null;
+    }
+}
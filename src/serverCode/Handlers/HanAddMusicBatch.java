@@ -0,0 +1,32 @@
+package serverCode.Handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import serverCode.Requests.ReqAddMusicBatch;
+import serverCode.Responses.ResAddMusicBatch;
+import serverCode.Services.AddMusicBatch;
+
+import java.io.IOException;
+
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/**
+ * This class handles the /addMusicBatch endpoint
+ */
+public class HanAddMusicBatch extends BASE_HANDLER {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!checkMethodIs("POST", exchange)) return;
+
+        ReqAddMusicBatch request = getRequest(exchange, ReqAddMusicBatch.class);
+        AddMusicBatch service = new AddMusicBatch();
+        ResAddMusicBatch response = service.add(request);
+
+        if (response.isSuccess()) {
+            sendResponse(response, exchange, HTTP_OK);
+        } else {
+            sendResponse(response, exchange, HTTP_INTERNAL_ERROR);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package serverCode.Handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import serverCode.Requests.ReqPartialMusicBatch;
+import serverCode.Responses.ResPartialSheetMusicBatch;
+import serverCode.Services.PartialSheetMusicBatch;
+
+import java.io.IOException;
+
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/**
+ * This class handles the /partialSheetMusicBatch endpoint
+ */
+public class HanPartialSheetMusicBatch extends BASE_HANDLER {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!checkMethodIs("POST", exchange)) return;
+
+        ReqPartialMusicBatch request = getRequest(exchange, ReqPartialMusicBatch.class);
+        PartialSheetMusicBatch service = new PartialSheetMusicBatch();
+        ResPartialSheetMusicBatch response = service.getPartials(request);
+
+        if (response.isSuccess()) {
+            sendResponse(response, exchange, HTTP_OK);
+        } else {
+            sendResponse(response, exchange, HTTP_INTERNAL_ERROR);
+        }
+    }
+}
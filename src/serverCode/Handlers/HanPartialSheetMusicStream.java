@@ -0,0 +1,112 @@
+package serverCode.Handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import serverCode.Requests.ReqPartialMusic;
+import serverCode.Responses.ResPartialSheetMusic;
+import serverCode.Services.PartialSheetMusic;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/**
+ * This class handles the /partialSheetMusicStream endpoint. It takes the same request as /partialSheetMusic, but
+ * answers with newline-delimited JSON, one object per line, each flushed to the client as soon as it is written:
+ * <ul>
+ *     <li>{@code {"type":"skeleton","meiSkeleton":...}} first,</li>
+ *     <li>then {@code {"type":"segment","index":0,"segment":...}} for each segment, in order,</li>
+ *     <li>then {@code {"type":"end","success":...,"message":...}} last.</li>
+ * </ul>
+ * If the partial fails before anything is streamed, e.g. because the file isn't found, a plain JSON error is sent
+ * instead, just as /partialSheetMusic would send it.
+ */
+public class HanPartialSheetMusicStream extends BASE_HANDLER {
+
+    private static final String CONTENT_TYPE = "application/x-ndjson; charset=" + CHAR_SET;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!checkMethodIs("POST", exchange)) return;
+
+        ReqPartialMusic request = getRequest(exchange, ReqPartialMusic.class);
+        PartialSheetMusic service = new PartialSheetMusic();
+        NdjsonSink sink = new NdjsonSink(exchange);
+        try {
+            ResPartialSheetMusic outcome = service.streamPartial(request, sink);
+            if (!sink.isOpen()) {
+                sendResponse(outcome, exchange, outcome.isSuccess() ? HTTP_OK : HTTP_INTERNAL_ERROR);
+                return;
+            }
+
+            Map<String, Object> end = line("end");
+            end.put("success", outcome.isSuccess());
+            end.put("message", outcome.message);
+            end.put("segments", sink.segmentCount);
+            sink.writeLine(end);
+        } finally {
+            sink.close();
+        }
+    }
+
+    private static Map<String, Object> line(String type) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", type);
+        return line;
+    }
+
+    /**
+     * Writes each part of a partial as a line of the response. The response headers are only sent with the first
+     * line, so a partial that fails before producing anything can still be answered with a plain error.
+     */
+    private static final class NdjsonSink implements PartialSheetMusic.PartialSink {
+        private final HttpExchange exchange;
+        private Writer writer;
+        private int segmentCount;
+
+        private NdjsonSink(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        private boolean isOpen() {
+            return writer != null;
+        }
+
+        @Override
+        public void skeleton(String meiSkeleton) throws IOException {
+            Map<String, Object> skeleton = line("skeleton");
+            skeleton.put("meiSkeleton", meiSkeleton);
+            writeLine(skeleton);
+        }
+
+        @Override
+        public void accept(String segment) throws IOException {
+            Map<String, Object> line = line("segment");
+            line.put("index", segmentCount++);
+            line.put("segment", segment);
+            writeLine(line);
+        }
+
+        private void writeLine(Map<String, Object> line) throws IOException {
+            if (writer == null) {
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                // A threshold of 0 sends the headers with the first line, so nothing waits on a buffer to fill
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new CompressingResponseStream(exchange, HTTP_OK, 0), CHAR_SET));
+            }
+            gson.toJson(line, writer);
+            writer.write('\n');
+            // Flushes through the compressor too, so the line reaches the client now rather than with the next one
+            writer.flush();
+        }
+
+        private void close() throws IOException {
+            if (writer != null) writer.close();
+        }
+    }
+}
@@ -2,13 +2,12 @@ package serverCode.Handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import serverCode.Requests.ReqSearchMusic;
-import serverCode.Responses.ResSearchMusic;
+import serverCode.Responses.BASE_RESPONSE;
 import serverCode.Services.SearchMusic;
 
 import java.io.IOException;
 
-import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
-import static java.net.HttpURLConnection.HTTP_OK;
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 
 /**
  * This class handles the /searchMusic endpoint
@@ -20,13 +19,12 @@ public class HanSearchMusic extends BASE_HANDLER {
         if (!checkMethodIs("POST", exchange)) return;
 
         ReqSearchMusic request = getRequest(exchange, ReqSearchMusic.class);
-        SearchMusic service = new SearchMusic();
-        ResSearchMusic response = service.search(request);
-
-        if (response.isSuccess()) {
-            sendResponse(response, exchange, HTTP_OK);
-        } else {
-            sendResponse(response, exchange, HTTP_INTERNAL_ERROR);
+        if (!SearchMusic.isValidCursor(request.getCursor())) {
+            sendResponse(new BASE_RESPONSE("Invalid cursor.", false), exchange, HTTP_BAD_REQUEST);
+            return;
         }
+        SearchMusic service = new SearchMusic();
+        // Returns as soon as the search is sent, the exchange is completed when Elasticsearch answers
+        sendResponseAsync(service.searchAsync(request), exchange);
     }
 }
@@ -0,0 +1,23 @@
+package serverCode.Handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import serverCode.Requests.ReqSearchMusicBatch;
+import serverCode.Services.SearchMusicBatch;
+
+import java.io.IOException;
+
+/**
+ * This class handles the /searchMusicBatch endpoint
+ */
+public class HanSearchMusicBatch extends BASE_HANDLER {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!checkMethodIs("POST", exchange)) return;
+
+        ReqSearchMusicBatch request = getRequest(exchange, ReqSearchMusicBatch.class);
+        SearchMusicBatch service = new SearchMusicBatch();
+        // Returns as soon as the searches are sent, the exchange is completed when Elasticsearch answers
+        sendResponseAsync(service.searchAsync(request), exchange);
+    }
+}
@@ -1,12 +1,19 @@
 package serverCode;
 
+import org.apache.http.pool.PoolStats;
 import serverCode.Handlers.*;
+import serverCode.Services.SearchMusic;
+import workers.ElasticProcessor;
+import workers.SearchCache;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static java.lang.Integer.parseInt;
+import static workers.EnvConfig.getEnvOrDefault;
 
 /**
  * This class is the server for all the backend. See 'run' and other methods for functionality and endpoints.
@@ -14,6 +21,15 @@ import static java.lang.Integer.parseInt;
 public class HttpServer {
 
     private final static int MAX_CONNECTIONS = 12;
+    /**
+     * Either "virtual" (one virtual thread per exchange) or "platform" (a bounded pool of platform threads)
+     */
+    private final static String EXECUTOR_MODE = getEnvOrDefault("SERVER_EXECUTOR", "virtual");
+    /**
+     * Size of the platform thread pool, only used when {@link #EXECUTOR_MODE} is "platform"
+     */
+    private final static int PLATFORM_THREADS = Integer.parseInt(
+            getEnvOrDefault("SERVER_THREADS", String.valueOf(Runtime.getRuntime().availableProcessors() * 4)));
     private com.sun.net.httpserver.HttpServer Server;
 
     /**
@@ -39,17 +55,22 @@ public class HttpServer {
 
     /**
      * Starts and configures the HTTP server on the given port. Initializes request contexts
-     * for all endpoints including {@code /searchMusic}, {@code /addMusic}, {@code /removeMusic},
-     * {@code /createMusicIndex}, and {@code /partialSheetMusic}, as well as a {@code /ping} route
-     * for basic health checks.
+     * for all endpoints including {@code /searchMusic}, {@code /searchMusicBatch}, {@code /addMusic},
+     * {@code /addMusicBatch}, {@code /removeMusic}, {@code /createMusicIndex}, {@code /partialSheetMusic},
+     * {@code /partialSheetMusicBatch}, and {@code /partialSheetMusicStream}, as well as a {@code /ping} route
+     * for basic health checks and a {@code /stats} route for runtime gauges.
      *
      * @param portNumber the port number on which to start the server
      * @throws IOException if an I/O error occurs while starting the server
      * @see HanSearchMusic
+     * @see HanSearchMusicBatch
      * @see HanAddMusic
+     * @see HanAddMusicBatch
      * @see HanRemoveMusic
      * @see HanCreateMusicIndex
      * @see HanPartialSheetMusic
+     * @see HanPartialSheetMusicBatch
+     * @see HanPartialSheetMusicStream
      */
     private void run(String portNumber) throws IOException {
         System.out.println("******************************************************");
@@ -63,28 +84,51 @@ public class HttpServer {
             return;
         }
 
-        Server.setExecutor(null);
+        Server.setExecutor(createExecutor());
 
-        System.out.println("Server created. Initializing contexts...");
+        System.out.println("Server created with '" + EXECUTOR_MODE + "' executor. Initializing contexts...");
 
         initializeContexts();
 
         Server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
 
         System.out.println("Success. Server started and waiting for connection.");
         System.out.println("******************************************************");
     }
 
+    /**
+     * Creates the executor every exchange is dispatched on. Without one, the JDK server handles each request on its
+     * single dispatcher thread, so one slow request blocks every other request behind it.
+     *
+     * <p>Virtual threads are the default, as our handlers spend most of their time waiting on Elasticsearch and
+     * the database. The bounded platform pool is kept as a fallback.
+     *
+     * @return the executor to hand to the server
+     * @throws IllegalStateException if {@code SERVER_EXECUTOR} is not a known mode
+     */
+    private static ExecutorService createExecutor() {
+        return switch (EXECUTOR_MODE.toLowerCase()) {
+            case "virtual" -> Executors.newVirtualThreadPerTaskExecutor();
+            case "platform" -> Executors.newFixedThreadPool(PLATFORM_THREADS);
+            default -> throw new IllegalStateException("Unexpected SERVER_EXECUTOR value: " + EXECUTOR_MODE);
+        };
+    }
+
     /**
      * Initializes all server request contexts and handlers.
      * This includes endpoints for music search, index creation, and partial sheet retrieval.
      */
     private void initializeContexts() {
         Server.createContext("/searchMusic", new HanSearchMusic());
+        Server.createContext("/searchMusicBatch", new HanSearchMusicBatch());
         Server.createContext("/addMusic", new HanAddMusic());
+        Server.createContext("/addMusicBatch", new HanAddMusicBatch());
         Server.createContext("/removeMusic", new HanRemoveMusic());
         Server.createContext("/createMusicIndex", new HanCreateMusicIndex());
         Server.createContext("/partialSheetMusic", new HanPartialSheetMusic());
+        Server.createContext("/partialSheetMusicBatch", new HanPartialSheetMusicBatch());
+        Server.createContext("/partialSheetMusicStream", new HanPartialSheetMusicStream());
 
         Server.createContext("/ping", exchange -> {
             String response = "pong\n";
@@ -93,5 +137,45 @@ public class HttpServer {
                 os.write(response.getBytes());
             }
         });
+
+        Server.createContext("/stats", exchange -> {
+            PoolStats pool = ElasticProcessor.getInstance().getPoolStats();
+            String response = "elastic_pool_leased " + pool.getLeased() + "\n" +
+                    "elastic_pool_pending " + pool.getPending() + "\n" +
+                    "elastic_pool_available " + pool.getAvailable() + "\n" +
+                    "elastic_pool_max " + pool.getMax() + "\n" +
+                    cacheStats("search_parse_cache", SearchMusic.getParseCache()) +
+                    cacheStats("search_result_cache", SearchMusic.getResultCache()) +
+                    "search_parse_coalesced " + SearchMusic.getParseFlights().getCoalesced() + "\n" +
+                    "search_result_coalesced " + SearchMusic.getSearchFlights().getCoalesced() + "\n";
+            exchange.sendResponseHeaders(200, response.getBytes().length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response.getBytes());
+            }
+        });
+    }
+
+    /**
+     * Formats the gauges of one cache for the {@code /stats} route.
+     */
+    private static String cacheStats(String name, SearchCache<?, ?> cache) {
+        return name + "_hits " + cache.getHits() + "\n" +
+                name + "_misses " + cache.getMisses() + "\n" +
+                name + "_evictions " + cache.getEvictions() + "\n" +
+                name + "_size " + cache.size() + "\n";
+    }
+
+    /**
+     * Stops accepting connections, gives in-flight exchanges a moment to finish, then closes the shared
+     * Elasticsearch client. Registered as a JVM shutdown hook.
+     */
+    private void shutdown() {
+        System.out.println("Shutting down server...");
+        Server.stop(2);
+        try {
+            ElasticProcessor.getInstance().close();
+        } catch (Exception e) {
+            System.out.println("Couldn't close the Elasticsearch client: " + e.getMessage());
+        }
     }
 }
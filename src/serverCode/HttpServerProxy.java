@@ -3,15 +3,21 @@ package serverCode;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import serverCode.Requests.ReqAddMusic;
+import serverCode.Requests.ReqAddMusicBatch;
 import serverCode.Requests.ReqRemoveMusic;
 import serverCode.Requests.ReqSearchMusic;
+import serverCode.Requests.ReqSearchMusicBatch;
 import serverCode.Responses.ResAddMusic;
+import serverCode.Responses.ResAddMusicBatch;
 import serverCode.Responses.ResRemoveMusic;
 import serverCode.Responses.ResSearchMusic;
+import serverCode.Responses.ResSearchMusicBatch;
 
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Acts as a client-side proxy to communicate with an external HTTP server using RESTful endpoints.
@@ -84,6 +90,7 @@ public class HttpServerProxy {
             connection.setRequestMethod(service.method);
             connection.addRequestProperty("Accept", "application/json");
             connection.addRequestProperty("Content-Type", "application/json");
+            connection.addRequestProperty("Accept-Encoding", "gzip, deflate");
             connection.addRequestProperty("Cache-Control", "no-cache");
             connection.addRequestProperty("Connection", "close");
 
@@ -105,6 +112,7 @@ public class HttpServerProxy {
             is = (responseCode >= 200 && responseCode < 400)
                     ? connection.getInputStream()
                     : connection.getErrorStream();
+            is = decodeContent(is, connection.getContentEncoding());
 
             return readString(is);
 
@@ -114,6 +122,23 @@ public class HttpServerProxy {
         }
     }
 
+    /**
+     * Wraps a response stream so it is transparently decompressed according to its {@code Content-Encoding}.
+     *
+     * @param is              the raw response stream, may be null if there is no body
+     * @param contentEncoding the response's {@code Content-Encoding} header, may be null
+     * @return a stream of the decoded response body
+     * @throws IOException if the gzip header cannot be read
+     */
+    private static InputStream decodeContent(InputStream is, String contentEncoding) throws IOException {
+        if (is == null || contentEncoding == null) return is;
+        return switch (contentEncoding.trim().toLowerCase()) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(is);
+            case "deflate" -> new InflaterInputStream(is);
+            default -> is;
+        };
+    }
+
     /**
      * Sends a search request to the music search endpoint.
      * Calls connectToServer(GenericService)
@@ -132,6 +157,24 @@ public class HttpServerProxy {
         }
     }
 
+    /**
+     * Sends many searches to the batch music search endpoint, to be run together.
+     * Calls connectToServer(GenericService)
+     *
+     * @param request the {@link ReqSearchMusicBatch} object containing the queries
+     * @return the {@link ResSearchMusicBatch} response, or {@code null} on failure
+     */
+    public ResSearchMusicBatch searchMusicBatch(ReqSearchMusicBatch request) {
+        try {
+            String requestBody = gson.toJson(request);
+            GenericService service = new GenericService("/searchMusicBatch", "POST", requestBody, null);
+            return gson.fromJson(connectToServer(service), ResSearchMusicBatch.class);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Sends a request to add a new music record to the server.
      * Calls connectToServer(GenericService)
@@ -150,6 +193,24 @@ public class HttpServerProxy {
         }
     }
 
+    /**
+     * Sends a request to add many music records to the server at once.
+     * Calls connectToServer(GenericService)
+     *
+     * @param request the {@link ReqAddMusicBatch} object containing the records to add
+     * @return the {@link ResAddMusicBatch} response, or {@code null} on failure
+     */
+    public ResAddMusicBatch addMusicBatch(ReqAddMusicBatch request) {
+        try {
+            String requestBody = gson.toJson(request);
+            GenericService service = new GenericService("/addMusicBatch", "POST", requestBody, null);
+            return gson.fromJson(connectToServer(service), ResAddMusicBatch.class);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Sends a request to remove a music record from the server.
      * Calls connectToServer(GenericService)
@@ -0,0 +1,22 @@
+package serverCode.Requests;
+
+import java.util.List;
+
+/**
+ * This class is the request object for the /addMusicBatch endpoint
+ */
+public class ReqAddMusicBatch {
+    List<ReqAddMusic> files;
+
+    public ReqAddMusicBatch(List<ReqAddMusic> files) {
+        this.files = files;
+    }
+
+    public List<ReqAddMusic> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<ReqAddMusic> files) {
+        this.files = files;
+    }
+}
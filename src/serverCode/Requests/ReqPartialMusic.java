@@ -2,6 +2,7 @@ package serverCode.Requests;
 
 import workers.Record;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -11,12 +12,22 @@ import java.util.Map;
 public class ReqPartialMusic {
     Record source;
     Map<String, List<String>> highlight;
+    /**
+     * The matches of the search hit, as sent with it: the token index each starts at and how many tokens it covers,
+     * flattened. If null, the matches are found again from the highlight instead; a request with neither is rejected.
+     */
+    int[] matches;
 
     public ReqPartialMusic(Record source, Map<String, List<String>> highlight) {
         this.source = source;
         this.highlight = highlight;
     }
 
+    public ReqPartialMusic(Record source, int[] matches) {
+        this.source = source;
+        this.matches = matches;
+    }
+
     public Record getSource() {
         return source;
     }
@@ -33,11 +44,20 @@ public class ReqPartialMusic {
         this.highlight = highlight;
     }
 
+    public int[] getMatches() {
+        return matches;
+    }
+
+    public void setMatches(int[] matches) {
+        this.matches = matches;
+    }
+
     @Override
     public String toString() {
         return "ReqPartialMusic{" +
                 "source=" + source +
                 ", highlight=" + highlight +
+                ", matches=" + Arrays.toString(matches) +
                 '}';
     }
 }
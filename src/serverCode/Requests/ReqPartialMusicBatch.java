@@ -0,0 +1,22 @@
+package serverCode.Requests;
+
+import java.util.List;
+
+/**
+ * This class is the request object for the /partialSheetMusicBatch endpoint
+ */
+public class ReqPartialMusicBatch {
+    List<ReqPartialMusic> hits;
+
+    public ReqPartialMusicBatch(List<ReqPartialMusic> hits) {
+        this.hits = hits;
+    }
+
+    public List<ReqPartialMusic> getHits() {
+        return hits;
+    }
+
+    public void setHits(List<ReqPartialMusic> hits) {
+        this.hits = hits;
+    }
+}
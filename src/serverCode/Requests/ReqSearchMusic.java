@@ -11,6 +11,22 @@ public class ReqSearchMusic {
     Map<String, List<String>> andMap;
     Map<String, List<String>> orMap;
     Map<String, List<String>> notMap;
+    /**
+     * How many hits to return. Null for the default page size.
+     */
+    Integer pageSize;
+    /**
+     * The cursor of the previous page's response, to continue from it. Null for the first page. The rest of the
+     * request must be the same as for the first page.
+     */
+    String cursor;
+    /**
+     * The {@code _source} fields each hit should carry, e.g. {@code "name"} or {@code "mei_metadata.titles"}.
+     * Null or empty for the whole document and the highlight text of each hit's matches. A list of fields only
+     * carries the highlight text if it names {@code "highlight"}; match positions, and the measure ranges those
+     * cover, are always carried.
+     */
+    List<String> fields;
 
     public ReqSearchMusic() {
     }
@@ -22,6 +38,12 @@ public class ReqSearchMusic {
         this.notMap = notMap;
     }
 
+    public ReqSearchMusic(String meiChunk, Map<String, List<String>> andMap, Map<String, List<String>> orMap, Map<String, List<String>> notMap, Integer pageSize, String cursor) {
+        this(meiChunk, andMap, orMap, notMap);
+        this.pageSize = pageSize;
+        this.cursor = cursor;
+    }
+
     public String getMeiChunk() {
         return meiChunk;
     }
@@ -54,6 +76,30 @@ public class ReqSearchMusic {
         this.notMap = notMap;
     }
 
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
+
     @Override
     public String toString() {
         return "ReqSearchMusic{" +
@@ -61,6 +107,9 @@ public class ReqSearchMusic {
                 ", andMap=" + andMap +
                 ", orMap=" + orMap +
                 ", notMap=" + notMap +
+                ", pageSize=" + pageSize +
+                ", cursor='" + cursor + '\'' +
+                ", fields=" + fields +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package serverCode.Requests;
+
+import java.util.List;
+
+/**
+ * This class is the request object for the /searchMusicBatch endpoint
+ */
+public class ReqSearchMusicBatch {
+    /**
+     * The searches to run, each for its first page only. A search with a cursor is answered with an error.
+     */
+    List<ReqSearchMusic> searches;
+
+    public ReqSearchMusicBatch(List<ReqSearchMusic> searches) {
+        this.searches = searches;
+    }
+
+    public List<ReqSearchMusic> getSearches() {
+        return searches;
+    }
+
+    public void setSearches(List<ReqSearchMusic> searches) {
+        this.searches = searches;
+    }
+}
@@ -0,0 +1,188 @@
+package serverCode.Responses;
+
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import workers.Record;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One search hit as sent to clients. Unlike the raw {@link Hit} it was made from, it only carries the document id,
+ * score, matches, and the source fields Elasticsearch actually returned, so a request that asks for a few fields
+ * gets a few fields back instead of a whole {@link Record} padded with nulls. The highlight text itself is left
+ * out when a request lists its fields without it, as {@link #matches} says the same thing in far fewer bytes.
+ */
+public class MusicHit {
+    private static final String HIGHLIGHTED_FIELD = "intervals_text";
+    private static final String OPEN_TAG = "<em>";
+    private static final String CLOSE_TAG = "</em>";
+
+    String id;
+    Double score;
+    /**
+     * The returned {@link Record} fields, keyed by their {@code _source} names
+     */
+    Map<String, Object> source;
+    Map<String, List<String>> highlight;
+    /**
+     * Where the searched phrase matched in {@code intervals_text}, as the token index each match starts at and how
+     * many tokens it covers, flattened e.g. {@code [12, 4, 97, 4]}. Null if the hit had no highlight.
+     */
+    int[] matches;
+    /**
+     * The measures the matches cover, merged where they touch, flattened as {@code [start, end, ...]} with both
+     * ends inclusive. Null if the hit had no matches or its source had no measure map.
+     */
+    int[] measureRanges;
+
+    public MusicHit(String id, Double score, Map<String, Object> source, Map<String, List<String>> highlight) {
+        this.id = id;
+        this.score = score;
+        this.source = source;
+        this.highlight = highlight;
+    }
+
+    public MusicHit(String id, Double score, Map<String, Object> source, Map<String, List<String>> highlight, int[] matches) {
+        this(id, score, source, highlight);
+        this.matches = matches;
+    }
+
+    /**
+     * Projects an Elasticsearch hit down to the fields it was fetched with.
+     *
+     * @param hit           the hit, whose source may have been filtered with {@code _source} includes
+     * @param withHighlight whether to send the highlight text as well as the matches read from it
+     * @return the hit to send to the client
+     */
+    public static MusicHit fromHit(Hit<Record> hit, boolean withHighlight) {
+        Map<String, List<String>> highlight = hit.highlight().isEmpty() ? null : hit.highlight();
+        int[] matches = (highlight == null) ? null : matchesOf(highlight.get(HIGHLIGHTED_FIELD));
+        return new MusicHit(hit.id(), hit.score(), toSourceMap(hit.source()), withHighlight ? highlight : null, matches);
+    }
+
+    /**
+     * Reads the token position of every match off a highlight of the whole {@code intervals_text}, e.g.
+     * {@code "0 2 <em>-1 3</em> 5"} gives {@code [2, 2]}. Each {@code <em>} span is one match, whether the
+     * highlighter wraps a whole phrase or each of its tokens.
+     *
+     * @param fragments the highlight of {@code intervals_text}, as one fragment
+     * @return the matches flattened as {@code [start, length, ...]}, or null if there is no highlight
+     */
+    static int[] matchesOf(List<String> fragments) {
+        if (fragments == null || fragments.isEmpty()) return null;
+        String text = fragments.get(0);
+
+        int[] matches = new int[8];
+        int count = 0;
+        int tokenCount = 0;
+        boolean inToken = false;
+        int openedAt = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<' && text.startsWith(OPEN_TAG, i)) {
+                openedAt = inToken ? tokenCount - 1 : tokenCount;
+                i += OPEN_TAG.length() - 1;
+            } else if (c == '<' && text.startsWith(CLOSE_TAG, i)) {
+                if (openedAt >= 0 && tokenCount > openedAt) {
+                    if (count + 2 > matches.length) matches = Arrays.copyOf(matches, matches.length * 2);
+                    matches[count++] = openedAt;
+                    matches[count++] = tokenCount - openedAt;
+                }
+                openedAt = -1;
+                i += CLOSE_TAG.length() - 1;
+            } else if (c == ' ') {
+                inToken = false;
+            } else if (!inToken) {
+                inToken = true;
+                tokenCount++;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Copies the fields of a record that are set. A field left out by source filtering is null in the record, and
+     * is left out here too.
+     */
+    private static Map<String, Object> toSourceMap(Record record) {
+        if (record == null) return null;
+        Map<String, Object> source = new LinkedHashMap<>();
+        putIfNotNull(source, "name", record.getName());
+        putIfNotNull(source, "file_id", record.getFile_id());
+        putIfNotNull(source, "intervals_text", record.getIntervals_text());
+        putIfNotNull(source, "measure_map", record.getMeasure_map());
+        putIfNotNull(source, "intervals_as_array", record.getIntervals_as_array());
+        putIfNotNull(source, "measure_map_as_array", record.getMeasure_map_as_array());
+        putIfNotNull(source, "mei_metadata", record.getMei_metadata());
+        putIfNotNull(source, "measure_offsets", record.getMeasure_offsets());
+        putIfNotNull(source, "keysig_offsets", record.getKeysig_offsets());
+        putIfNotNull(source, "skeleton_ranges", record.getSkeleton_ranges());
+        return source;
+    }
+
+    private static void putIfNotNull(Map<String, Object> source, String key, Object value) {
+        if (value != null) source.put(key, value);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Double getScore() {
+        return score;
+    }
+
+    public void setScore(Double score) {
+        this.score = score;
+    }
+
+    public Map<String, Object> getSource() {
+        return source;
+    }
+
+    public void setSource(Map<String, Object> source) {
+        this.source = source;
+    }
+
+    public int[] getMatches() {
+        return matches;
+    }
+
+    public void setMatches(int[] matches) {
+        this.matches = matches;
+    }
+
+    public int[] getMeasureRanges() {
+        return measureRanges;
+    }
+
+    public void setMeasureRanges(int[] measureRanges) {
+        this.measureRanges = measureRanges;
+    }
+
+    public Map<String, List<String>> getHighlight() {
+        return highlight;
+    }
+
+    public void setHighlight(Map<String, List<String>> highlight) {
+        this.highlight = highlight;
+    }
+
+    @Override
+    public String toString() {
+        return "MusicHit{" +
+                "id='" + id + '\'' +
+                ", score=" + score +
+                ", source=" + source +
+                ", highlight=" + highlight +
+                ", matches=" + Arrays.toString(matches) +
+                ", measureRanges=" + Arrays.toString(measureRanges) +
+                '}';
+    }
+}
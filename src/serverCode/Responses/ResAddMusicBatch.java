@@ -0,0 +1,48 @@
+package serverCode.Responses;
+
+import java.util.List;
+
+/**
+ * This class is the response object for the /addMusicBatch endpoint. It holds one {@link ResAddMusic} per file,
+ * in the same order as the files of the request.
+ */
+public class ResAddMusicBatch extends BASE_RESPONSE {
+    List<ResAddMusic> results;
+    int indexed;
+    int failed;
+
+    public ResAddMusicBatch(String message, boolean success) {
+        super(message, success);
+    }
+
+    public ResAddMusicBatch(String message, boolean success, List<ResAddMusic> results, int indexed, int failed) {
+        super(message, success);
+        this.results = results;
+        this.indexed = indexed;
+        this.failed = failed;
+    }
+
+    public List<ResAddMusic> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ResAddMusic> results) {
+        this.results = results;
+    }
+
+    public int getIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(int indexed) {
+        this.indexed = indexed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+}
@@ -0,0 +1,40 @@
+package serverCode.Responses;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the response object for the /partialSheetMusicBatch endpoint. It holds one
+ * {@link ResPartialSheetMusic} per hit, in the same order as the hits of the request. Hits on the same file share its
+ * skeleton, so the results carry none of their own; each file's skeleton is sent once, keyed by file name.
+ */
+public class ResPartialSheetMusicBatch extends BASE_RESPONSE {
+    Map<String, String> skeletons;
+    List<ResPartialSheetMusic> results;
+
+    public ResPartialSheetMusicBatch(String message, boolean success) {
+        super(message, success);
+    }
+
+    public ResPartialSheetMusicBatch(String message, boolean success, Map<String, String> skeletons, List<ResPartialSheetMusic> results) {
+        super(message, success);
+        this.skeletons = skeletons;
+        this.results = results;
+    }
+
+    public Map<String, String> getSkeletons() {
+        return skeletons;
+    }
+
+    public void setSkeletons(Map<String, String> skeletons) {
+        this.skeletons = skeletons;
+    }
+
+    public List<ResPartialSheetMusic> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ResPartialSheetMusic> results) {
+        this.results = results;
+    }
+}
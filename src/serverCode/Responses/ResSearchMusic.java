@@ -1,20 +1,25 @@
 package serverCode.Responses;
 
-import co.elastic.clients.elasticsearch.core.search.Hit;
-import workers.Record;
-
-
 /**
  * This class is the response object for the /searchMusic endpoint
  */
 public class ResSearchMusic extends BASE_RESPONSE {
-    public Hit<Record>[] hits;
+    public MusicHit[] hits;
+    /**
+     * Pass this back as the request's cursor to get the next page. Null when there are no more hits.
+     */
+    public String cursor;
 
-    public ResSearchMusic(Hit<Record>[] hits) {
+    public ResSearchMusic(MusicHit[] hits) {
         super(null, true);
         this.hits = hits;
     }
 
+    public ResSearchMusic(MusicHit[] hits, String cursor) {
+        this(hits);
+        this.cursor = cursor;
+    }
+
     public ResSearchMusic(String message, boolean success) {
         super(message, success);
         this.hits = null;
@@ -25,14 +30,13 @@ public class ResSearchMusic extends BASE_RESPONSE {
         sb.append("ResSearchMusic:");
         sb.append("\nSuccess=").append(success);
         sb.append("\nMessage=").append(message);
+        sb.append("\nCursor=").append(cursor);
         sb.append("\nHits=");
-        for (Hit<Record> hit : hits) {
-            sb.append("\n\tSource: ").append(hit.source());
-            sb.append("\n\tFields: ").append(hit.fields());
-            sb.append("\n\tScore: ").append(hit.score());
-            sb.append("\n\tHighlight: ").append(hit.highlight());
-            sb.append("\n\tIndex: ").append(hit.index());
-            sb.append("\n\tID: ").append(hit.id());
+        for (MusicHit hit : hits) {
+            sb.append("\n\tSource: ").append(hit.getSource());
+            sb.append("\n\tScore: ").append(hit.getScore());
+            sb.append("\n\tHighlight: ").append(hit.getHighlight());
+            sb.append("\n\tID: ").append(hit.getId());
             sb.append("\n");
         }
         return sb.toString();
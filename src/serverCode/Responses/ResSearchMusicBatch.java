@@ -0,0 +1,28 @@
+package serverCode.Responses;
+
+import java.util.List;
+
+/**
+ * This class is the response object for the /searchMusicBatch endpoint. It holds one {@link ResSearchMusic} per
+ * search, in the same order as the searches of the request.
+ */
+public class ResSearchMusicBatch extends BASE_RESPONSE {
+    List<ResSearchMusic> results;
+
+    public ResSearchMusicBatch(String message, boolean success) {
+        super(message, success);
+    }
+
+    public ResSearchMusicBatch(List<ResSearchMusic> results) {
+        super(null, true);
+        this.results = results;
+    }
+
+    public List<ResSearchMusic> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ResSearchMusic> results) {
+        this.results = results;
+    }
+}
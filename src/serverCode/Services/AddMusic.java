@@ -1,65 +1,37 @@
 package serverCode.Services;
 
 import music.Document;
-import parsers.DocumentParser;
+import parsers.MeiOffsetScanner;
+import parsers.StreamingDocumentParser;
 import serverCode.Requests.ReqAddMusic;
 import serverCode.Responses.ResAddMusic;
 import workers.ElasticProcessor;
 import workers.Record;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.text.Normalizer;
+import java.io.StringReader;
 
 /**
  * Service responsible for adding a new music document.
- * Accepts a request with file data, saves it temporarily, parses the document, and indexes it using ElasticSearch.
+ * Accepts a request with file data, parses the document, and indexes it using ElasticSearch.
  */
 public class AddMusic extends BASE_SERVICE {
 
     /**
-     * Adds a music document to the system by saving the input file, parsing it into a structured document,
+     * Adds a music document to the system by parsing the input file into a structured document,
      * and indexing it in {@link ElasticProcessor}.
      *
      * @param request A {@link ReqAddMusic} containing file name, contents, and related metadata.
      * @return A {@link ResAddMusic} indicating success or failure, with an optional message.
-     * @throws IOException if there is an issue creating or writing to the temporary file.
+     * @throws IOException never in practice, parse and index failures are reported in the response.
      */
     public ResAddMusic add(ReqAddMusic request) throws IOException {
-        String normalizedFileName = Normalizer.normalize(request.getFileName(), Normalizer.Form.NFC);
-        File tempFile = new File(normalizedFileName);
-
-        if (tempFile.exists()) {
-            tempFile.delete(); // Returns false if it DNE, which is the desired behaviour
-        }
-
-        boolean created = tempFile.createNewFile();
-        if (!created) {
-            return new ResAddMusic("Failed to create temporary file.", false, null);
-        }
-
-        if (!writeFileContents(tempFile, request.getFileContents())) {
-            return new ResAddMusic("Unknown error when trying to write new file.", false, null);
-        }
-
         try {
-            System.out.println("Parsing file: " + request.getFileName());
-            DocumentParser parser = new DocumentParser();
-            parser.setInFile(tempFile);
+            Record record = parseRecord(request);
 
-            Document document = parser.getDocumentFromFile();
-            Record record = new Record(
-                    request.getFileName(),
-                    document.getIntervalRep(),
-                    document.getMeasureMap(),
-                    request.getFile_id(),
-                    document.getMetadata()
-            );
-
-            ElasticProcessor processor = new ElasticProcessor();
+            ElasticProcessor processor = ElasticProcessor.getInstance();
             String indexResult = processor.indexRecord(record).toString();
+            SearchMusic.invalidateCachedResults();
 
             return new ResAddMusic(
                     null,
@@ -71,24 +43,37 @@ public class AddMusic extends BASE_SERVICE {
             return new ResAddMusic("IO Exception: Couldn't index record: " + e, false, e.getMessage());
         } catch (Exception e) {
             return new ResAddMusic("Catch-all Exception: Couldn't index record: " + e, false, e.getMessage());
-        } finally {
-            tempFile.delete();
         }
     }
 
     /**
-     * Writes string content to the specified file using UTF-8 encoding.
+     * Parses the file in a request into the {@link Record} we index, without indexing it.
+     *
+     * <p>The contents are streamed straight from memory, so concurrent calls never touch the filesystem or collide,
+     * and no DOM of the whole piece is built just to read its intervals.
      *
-     * @param file     The file to write to.
-     * @param contents The string contents to write.
-     * @return true if writing was successful, false otherwise.
+     * @param request A {@link ReqAddMusic} containing file name, contents, and related metadata.
+     * @return The parsed {@link Record}.
+     * @throws IOException if the contents can't be parsed.
      */
-    private boolean writeFileContents(File file, String contents) {
-        try (FileOutputStream out = new FileOutputStream(file)) {
-            out.write(contents.getBytes(StandardCharsets.UTF_8));
-            return true;
-        } catch (IOException e) {
-            return false;
+    public Record parseRecord(ReqAddMusic request) throws IOException {
+        System.out.println("Parsing file: " + request.getFileName());
+        Document document = new StreamingDocumentParser().parse(new StringReader(request.getFileContents()));
+        Record record = new Record(
+                request.getFileName(),
+                document.getIntervalRep(),
+                document.getMeasureMap(),
+                request.getFile_id(),
+                document.getMetadata()
+        );
+
+        // Where the measures lie in the file as stored, so partial sheet music never has to parse it
+        MeiOffsetScanner.Offsets offsets = MeiOffsetScanner.scan(request.getFileContents());
+        if (offsets != null) {
+            record.setMeasure_offsets(offsets.measureOffsets());
+            record.setKeysig_offsets(offsets.keySigOffsets());
+            record.setSkeleton_ranges(offsets.skeletonRanges());
         }
+        return record;
     }
 }
@@ -0,0 +1,103 @@
+package serverCode.Services;
+
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import serverCode.Requests.ReqAddMusic;
+import serverCode.Requests.ReqAddMusicBatch;
+import serverCode.Responses.ResAddMusic;
+import serverCode.Responses.ResAddMusicBatch;
+import workers.ElasticProcessor;
+import workers.Record;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Service responsible for adding many music documents at once. The files are parsed in parallel, then indexed with
+ * as few {@code _bulk} requests to ElasticSearch as the bulk limits of {@link ElasticProcessor} allow.
+ */
+public class AddMusicBatch extends BASE_SERVICE {
+
+    /**
+     * Parses and indexes every file in the request. A file that fails to parse or index does not stop the others.
+     *
+     * @param request A {@link ReqAddMusicBatch} holding one {@link ReqAddMusic} per file.
+     * @return A {@link ResAddMusicBatch} with one result per file, in request order. It is only unsuccessful if
+     * the request held no files at all; per-file failures are reported in its results.
+     */
+    public ResAddMusicBatch add(ReqAddMusicBatch request) {
+        List<ReqAddMusic> files = (request == null) ? null : request.getFiles();
+        if (files == null || files.isEmpty()) {
+            return new ResAddMusicBatch("No files in batch.", false);
+        }
+
+        int size = files.size();
+        ResAddMusic[] results = new ResAddMusic[size];
+        Record[] records = new Record[size];
+
+        // Parsing is CPU-bound and independent per file
+        AddMusic addMusic = new AddMusic();
+        IntStream.range(0, size).parallel().forEach(i -> {
+            try {
+                records[i] = addMusic.parseRecord(files.get(i));
+            } catch (Exception e) {
+                results[i] = new ResAddMusic("Couldn't parse record: " + e, false, e.getMessage());
+            }
+        });
+
+        List<Integer> parsedPositions = new ArrayList<>();
+        List<Record> parsedRecords = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (records[i] != null) {
+                parsedPositions.add(i);
+                parsedRecords.add(records[i]);
+            }
+        }
+
+        ElasticProcessor processor = ElasticProcessor.getInstance();
+        int offset = 0;
+        for (List<Record> chunk : processor.splitIntoBulkChunks(parsedRecords)) {
+            List<Integer> chunkPositions = parsedPositions.subList(offset, offset + chunk.size());
+            offset += chunk.size();
+            indexChunk(processor, chunk, chunkPositions, results);
+        }
+        if (!parsedRecords.isEmpty()) {
+            SearchMusic.invalidateCachedResults();
+        }
+
+        int failed = (int) Arrays.stream(results).filter(result -> !result.isSuccess()).count();
+        String message = (failed == 0) ? null : failed + " of " + size + " files failed.";
+        return new ResAddMusicBatch(message, true, Arrays.asList(results), size - failed, failed);
+    }
+
+    /**
+     * Sends one chunk of records as a single {@code _bulk} request and fills in their results. If the request as a
+     * whole fails, every record in the chunk is marked as failed.
+     *
+     * @param processor The processor to index with.
+     * @param chunk     The records to index.
+     * @param positions The position in the request of each record in {@code chunk}.
+     * @param results   The per-file results to fill in.
+     */
+    private void indexChunk(ElasticProcessor processor, List<Record> chunk, List<Integer> positions, ResAddMusic[] results) {
+        try {
+            List<BulkResponseItem> items = processor.bulkIndexRecords(chunk);
+            for (int i = 0; i < positions.size(); i++) {
+                BulkResponseItem item = (i < items.size()) ? items.get(i) : null;
+                if (item == null) {
+                    results[positions.get(i)] = new ResAddMusic("No bulk response for record.", false, null);
+                } else if (item.error() != null) {
+                    results[positions.get(i)] = new ResAddMusic(
+                            "Couldn't index record: " + item.error().reason(), false, item.error().type());
+                } else {
+                    results[positions.get(i)] = new ResAddMusic(null, true, item.result());
+                }
+            }
+        } catch (Exception e) {
+            for (int position : positions) {
+                results[position] = new ResAddMusic("Bulk request failed: " + e, false, e.getMessage());
+            }
+        }
+    }
+}
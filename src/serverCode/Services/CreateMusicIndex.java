@@ -9,8 +9,9 @@ import workers.ElasticProcessor;
 public class CreateMusicIndex extends BASE_SERVICE {
     public ResCreateMusicIndex create() {
         try {
-            ElasticProcessor elasticProcessor = new ElasticProcessor();
+            ElasticProcessor elasticProcessor = ElasticProcessor.getInstance();
             elasticProcessor.createMusicIndex();
+            SearchMusic.invalidateCachedResults();
 
             return new ResCreateMusicIndex(null, true);
         } catch (Exception e) {
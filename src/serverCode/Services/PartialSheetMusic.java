@@ -7,12 +7,12 @@ import parsers.DocumentParser;
 import serverCode.Requests.ReqPartialMusic;
 import serverCode.Responses.ResPartialSheetMusic;
 import workers.Indexer;
+import workers.IntervalPatternMatcher;
+import workers.Record;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static parsers.DocumentParser.elementToStringWithoutXmlDeclaration;
 
@@ -20,6 +20,8 @@ import static parsers.DocumentParser.elementToStringWithoutXmlDeclaration;
  * The class responsible for finding the appropriate partial sheet music chunks in highlighted search results and sending them back
  */
 public class PartialSheetMusic {
+    static final String NO_MATCHES_MESSAGE = "Request has neither matches nor highlight";
+
     /**
      * Populates the {@code start} and {@code end} lists with measure ranges that overlap
      * with the highlighted intervals in the music record contained within the request.
@@ -31,51 +33,131 @@ public class PartialSheetMusic {
      * @param end     A list to populate with the end measures of overlapping ranges.
      */
     public static void getHighlightMeasures(ReqPartialMusic request, List<Integer> start, List<Integer> end) {
-        List<Byte> intervalSequence = parseByteList(request.getSource().getIntervals_text());
-        List<Integer> measureMap = parseIntegerList(request.getSource().getMeasure_map());
-        List<List<Byte>> highlightPatterns = getBytesFromHighlight(String.valueOf(request.getHighlight()));
+        int[] measureMap = measureMapOf(request.getSource());
+        if (measureMap == null) return;
+
+        // Matches sent with the hit already say where they are, so only the highlight of older clients is searched
+        int[] beginEndMeasures = (request.getMatches() != null)
+                ? getMeasuresOfMatches(request.getMatches(), measureMap)
+                : getMeasuresOfHighlight(request, measureMap);
+
+        // The ranges come out in order and don't overlap, so both lists are already sorted
+        for (int i = 0; i < beginEndMeasures.length; i += 2) {
+            start.add(beginEndMeasures[i]);
+            end.add(beginEndMeasures[i + 1]);
+        }
+    }
+
+    /**
+     * Checks that a request says where its matches are, either as match positions or as the highlight they came
+     * from. Without either there is nothing to extract, so it is an error rather than an empty partial.
+     *
+     * @param request The request to check.
+     * @return Whether the request carries matches or a non-empty highlight.
+     */
+    public static boolean hasMatchesOrHighlight(ReqPartialMusic request) {
+        return request.getMatches() != null || (request.getHighlight() != null && !request.getHighlight().isEmpty());
+    }
 
-        List<List<Integer>> beginEndMeasures = getMeasuresOfAllPatterns(highlightPatterns, intervalSequence, measureMap);
+    /**
+     * Reads the measure map of a record, from its array if it has one, or else from its text.
+     *
+     * @param source The record, whose source may have been filtered down to a few fields.
+     * @return The measure map, or null if the record has neither form of it.
+     */
+    public static int[] measureMapOf(Record source) {
+        if (source.getMeasure_map_as_array() != null) return source.getMeasure_map_as_array();
+        if (source.getMeasure_map() == null) return null;
+        return source.getMeasure_map().isBlank() ? new int[0] : parseIntArray(source.getMeasure_map());
+    }
+
+    /**
+     * Finds the measure ranges of the intervals highlighted in a request, by searching the source's intervals for
+     * each highlighted fragment.
+     */
+    private static int[] getMeasuresOfHighlight(ReqPartialMusic request, int[] measureMap) {
+        Record source = request.getSource();
+        byte[] intervalSequence = (source.getIntervals_as_array() != null)
+                ? toByteArray(source.getIntervals_as_array())
+                : parseByteArray(source.getIntervals_text());
+        List<byte[]> highlightPatterns = getBytesFromHighlight(String.valueOf(request.getHighlight()));
+
+        return getMeasuresOfAllPatterns(highlightPatterns, intervalSequence, measureMap);
+    }
 
-        for (List<Integer> measureRange : beginEndMeasures) {
-            start.add(measureRange.get(0));
-            end.add(measureRange.get(1));
+    /**
+     * Maps matches straight through the measure map, in time linear in the number of matches and measures.
+     * Matches that don't fit the measure map are ignored.
+     *
+     * @param matches        The matches, flattened as {@code [start, length, ...]} in intervals.
+     * @param measureNumbers A list of measure numbers mapped one-to-one with the intervals + 1 element.
+     * @return The merged measure number intervals in order, flattened as {@code [start, end, start, end, ...]}.
+     */
+    public static int[] getMeasuresOfMatches(int[] matches, int[] measureNumbers) {
+        if (measureNumbers.length == 0) return new int[0];
+
+        int[] furthestEnd = new int[measureNumbers[measureNumbers.length - 1] + 1];
+        Arrays.fill(furthestEnd, -1);
+
+        for (int i = 0; i + 1 < matches.length; i += 2) {
+            int position = matches[i];
+            int length = matches[i + 1];
+            if (position < 0 || length < 0 || position + length >= measureNumbers.length) continue;
+
+            int startMeasure = measureNumbers[position];
+            furthestEnd[startMeasure] = Math.max(furthestEnd[startMeasure], measureNumbers[position + length]);
         }
 
-        start.sort(Comparator.naturalOrder());
-        end.sort(Comparator.naturalOrder());
+        return mergeIntervals(furthestEnd);
     }
 
     /**
-     * Parses a space-separated string of bytes into a list of Byte objects.
+     * Parses a space-separated string of bytes into a byte array.
      *
      * @param byteString A string containing space-separated byte values.
-     * @return A list of bytes parsed from the input string.
+     * @return The bytes parsed from the input string, in order.
      */
-    public static List<Byte> parseByteList(String byteString) {
+    public static byte[] parseByteArray(String byteString) {
         String[] tokens = byteString.trim().split(" ");
-        List<Byte> byteList = new ArrayList<>(tokens.length);
-        for (String token : tokens) {
-            byteList.add(Byte.parseByte(token));
+        byte[] bytes = new byte[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            bytes[i] = Byte.parseByte(tokens[i]);
         }
-        return byteList;
+        return bytes;
     }
 
     /**
-     * Converts a space-delimited string of numbers into a list of integers.
+     * Converts a space-delimited string of numbers into an array of integers.
      *
      * @param str The input string containing space-separated integer values.
-     * @return A list of Integer values.
+     * @return The integers parsed from the input string, in order.
      */
-    public static List<Integer> parseIntegerList(String str) {
+    public static int[] parseIntArray(String str) {
         String[] tokens = str.trim().split(" ");
-        List<Integer> integers = new ArrayList<>(tokens.length);
-        for (String token : tokens) {
-            integers.add(Integer.parseInt(token));
+        int[] integers = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            integers[i] = Integer.parseInt(tokens[i]);
         }
         return integers;
     }
 
+    /**
+     * Narrows intervals to bytes, failing on any that don't fit, as parsing them from text would.
+     *
+     * @param intervals The intervals of a piece.
+     * @return The same intervals as bytes.
+     */
+    private static byte[] toByteArray(int[] intervals) {
+        byte[] bytes = new byte[intervals.length];
+        for (int i = 0; i < intervals.length; i++) {
+            if (intervals[i] != (byte) intervals[i]) {
+                throw new NumberFormatException("Interval out of range: " + intervals[i]);
+            }
+            bytes[i] = (byte) intervals[i];
+        }
+        return bytes;
+    }
+
     /**
      * Extracts a list of byte-encoded intervals from a highlight string containing
      * space-separated byte values enclosed within <em> tags.
@@ -83,14 +165,14 @@ public class PartialSheetMusic {
      * [[1, 2, 3], [4, 5]]
      *
      * @param clumpedHighlight The raw highlight string containing <em> tags.
-     * @return A list of byte lists, each representing a group of parsed interval values.
+     * @return A list of byte arrays, each representing a group of parsed interval values.
      */
-    public static List<List<Byte>> getBytesFromHighlight(String clumpedHighlight) {
+    public static List<byte[]> getBytesFromHighlight(String clumpedHighlight) {
         List<String> highlightedSegments = extractEmphasizedSegments(clumpedHighlight);
 
-        List<List<Byte>> parsedIntervals = new ArrayList<>();
+        List<byte[]> parsedIntervals = new ArrayList<>();
         for (String segment : highlightedSegments) {
-            parsedIntervals.add(parseByteList(segment));
+            parsedIntervals.add(parseByteArray(segment));
         }
 
         return parsedIntervals;
@@ -124,196 +206,318 @@ public class PartialSheetMusic {
 
     /**
      * Identifies ranges of measure numbers that correspond to matched highlight sequences.
-     * Each matched sequence from {@code highlightPatterns} is located within the {@code allIntervals},
-     * and its corresponding measure number range is extracted using {@code measureNumbers}.
-     * Adjacent or overlapping measure ranges are merged into unified intervals.
+     * Every sequence from {@code highlightPatterns} is located within {@code allIntervals} in a single pass with an
+     * {@link IntervalPatternMatcher}, and its corresponding measure number range is extracted using
+     * {@code measureNumbers}. Adjacent or overlapping measure ranges are merged into unified intervals.
      *
      * @param highlightPatterns A list of byte-sequence patterns to search for.
      * @param allIntervals      The complete list of byte intervals in order.
      * @param measureNumbers    A list of measure numbers mapped one-to-one with {@code allIntervals} + 1 element.
-     * @return A list of merged measure number intervals represented as two-element lists [start, end].
+     * @return The merged measure number intervals in order, flattened as {@code [start, end, start, end, ...]}.
      */
-    public static List<List<Integer>> getMeasuresOfAllPatterns(
-            List<List<Byte>> highlightPatterns,
-            List<Byte> allIntervals,
-            List<Integer> measureNumbers) {
-
-        List<List<Integer>> matchedMeasureRanges = new ArrayList<>();
-
-        for (List<Byte> pattern : highlightPatterns) {
-            // Go through every highlighted chunk
-            List<Integer> positionsFound = findSubsequencePositions(allIntervals, pattern);
-            for (int i : positionsFound) {
-                matchedMeasureRanges.add(List.of(measureNumbers.get(i), measureNumbers.get(i + pattern.size())));
-            }
-        }
+    public static int[] getMeasuresOfAllPatterns(
+            List<byte[]> highlightPatterns,
+            byte[] allIntervals,
+            int[] measureNumbers) {
 
-        return mergeIntervals(matchedMeasureRanges);
+        if (highlightPatterns.isEmpty() || measureNumbers.length == 0) return new int[0];
+
+        // The furthest measure any match starting in each measure reaches, or -1 if none start there
+        int[] furthestEnd = new int[measureNumbers[measureNumbers.length - 1] + 1];
+        Arrays.fill(furthestEnd, -1);
+
+        IntervalPatternMatcher matcher = new IntervalPatternMatcher(highlightPatterns);
+        matcher.findAll(allIntervals, (pattern, position) -> {
+            int startMeasure = measureNumbers[position];
+            int endMeasure = measureNumbers[position + matcher.patternLength(pattern)];
+            furthestEnd[startMeasure] = Math.max(furthestEnd[startMeasure], endMeasure);
+        });
+
+        return mergeIntervals(furthestEnd);
     }
 
     /**
-     * Finds all starting positions in the {@code main} list where the {@code pattern} list appears
-     * as a contiguous subsequence. The search is performed by converting both lists to space-separated
-     * string representations and then locating all occurrences of the {@code pattern} within the {@code main} string
-     * as Java's string search is highly optimized.
-     *
-     * <p>The returned positions correspond to the starting indices in the {@code main} list where
-     * each match begins.</p>
+     * Merges overlapping or adjacent measure ranges into consolidated ranges, in one sweep over the measures.
      *
-     * @param main    the primary list of bytes to search within
-     * @param pattern the byte pattern to search for as a subsequence
-     * @return a list of starting indices where {@code pattern} occurs in {@code main}
-     * @see #convertStringIndexToArrayIndex(String, int)
+     * @param furthestEnd For each measure, the furthest end of the ranges starting at it, or -1 if none do.
+     * @return The merged ranges in order, flattened as {@code [start, end, start, end, ...]}.
      */
-    public static List<Integer> findSubsequencePositions(List<Byte> main, List<Byte> pattern) {
-        String mainStr = listToDelimitedString(main);
-        String patternStr = listToDelimitedString(pattern);
-
-        List<Integer> positions = new ArrayList<>();
-        int index = mainStr.indexOf(patternStr);
-
-        while (index != -1) {
-            // Check to make sure we didn't match '3 4 5' to '-3 4 5' or '113 4 5'
-            // If it isn't the beginning of the string, there should be a space right before the match
-            if (index != 0 && mainStr.charAt(index-1) != ' '){
-                // Otherwise we have hit a false match
-                index = mainStr.indexOf(patternStr, index + 1);
-                continue;
+    public static int[] mergeIntervals(int[] furthestEnd) {
+        int[] merged = new int[8];
+        int count = 0;
+        int currentStart = -1;
+        int currentEnd = -1;
+
+        for (int measure = 0; measure < furthestEnd.length; measure++) {
+            if (furthestEnd[measure] < 0) continue;
+
+            if (currentStart >= 0 && currentEnd >= measure - 1) {
+                currentEnd = Math.max(currentEnd, furthestEnd[measure]);
+            } else {
+                if (currentStart >= 0) {
+                    if (count + 2 > merged.length) merged = Arrays.copyOf(merged, merged.length * 2);
+                    merged[count++] = currentStart;
+                    merged[count++] = currentEnd;
+                }
+                currentStart = measure;
+                currentEnd = furthestEnd[measure];
             }
-            int arrayIndex = convertStringIndexToArrayIndex(mainStr, index);
-            positions.add(arrayIndex);
-            index = mainStr.indexOf(patternStr, index + 1);
         }
 
-        return positions;
+        if (currentStart >= 0) {
+            if (count + 2 > merged.length) merged = Arrays.copyOf(merged, merged.length * 2);
+            merged[count++] = currentStart;
+            merged[count++] = currentEnd;
+        }
+        return Arrays.copyOf(merged, count);
     }
 
     /**
-     * Converts the list of bytes to a space-delimited string with no brackets or commas.
+     * Extracts specific segments of MEI sheet music from a file stored in a PostgreSQL database.
+     * The segments correspond to the overlapping highlighted measures defined in the request.
+     *
+     * <p>If the request's source carries the offsets found when the file was indexed, the segments and skeleton are
+     * cut straight out of the stored file. Otherwise, e.g. for files indexed before the offsets existed, the file is
+     * parsed into a DOM and they are taken from that.
      *
-     * @param list the byte list to convert
-     * @return a space-delimited string representation of the list
+     * @param request The {@link ReqPartialMusic} containing highlight information and file reference.
+     * @return A {@link ResPartialSheetMusic} object containing either the matched MEI segments or an error message.
      */
-    private static String listToDelimitedString(List<Byte> list) {
-        return list.stream()
-                .map(Object::toString)
-                .collect(Collectors.joining(" "));
+    public ResPartialSheetMusic getPartial(ReqPartialMusic request) {
+        if (!hasMatchesOrHighlight(request)) return new ResPartialSheetMusic(NO_MATCHES_MESSAGE, false);
+        String fileContent = Indexer.getFileByName(request.getSource().getName());
+        if (fileContent == null) return new ResPartialSheetMusic("File not found in database", false);
+
+        try {
+            FilePartials partials = extractPartials(fileContent, List.of(request));
+            return new ResPartialSheetMusic(null, true, partials.segments().get(0), partials.meiSkeleton());
+        } catch (Exception e) {
+            System.err.println("Error parsing MEI document: " + e.getMessage());
+            return new ResPartialSheetMusic("Error parsing document", false);
+        }
     }
 
     /**
-     * Converts a string index from the space-delimited array string into a list index.
-     * The index corresponds to the number of spaces (i.e., list elements) before the given character position.
+     * The segments of every hit asked for on one file, and the skeleton they share
      *
-     * @param arrayStr the string representation of the list (e.g., {@code "12 14 1562 0 2 5 3"})
-     * @param index    the character index within the string
-     * @return the corresponding zero-based index in the original list
+     * @param segments    the segments of each hit, in the order the hits were given
+     * @param meiSkeleton the file with everything inside its first section removed
      */
-    public static int convertStringIndexToArrayIndex(String arrayStr, int index) {
-        String prefix = arrayStr.substring(0, index);
-        return prefix.isEmpty() ? 0 : prefix.split(" ").length;
+    public record FilePartials(List<List<String>> segments, String meiSkeleton) {
     }
 
     /**
-     * Merges overlapping or adjacent intervals into consolidated ranges.
-     * Each interval is a two-element list representing [start, end].
+     * Extracts the segments of any number of hits on the same file, and the file's skeleton, from the file's
+     * content. If every hit carries the offsets found when the file was indexed, everything is cut straight out of
+     * the content; otherwise the content is parsed into a DOM once, and every hit's segments are taken from it.
      *
-     * @param intervals The list of intervals to merge.
-     * @return A new list of merged intervals.
+     * @param fileContent The content of the file, as stored in the database.
+     * @param requests    The hits on the file, each with its source and matches or highlight.
+     * @return The segments of each hit and the shared skeleton.
+     * @throws Exception if the file has to be parsed and can't be.
      */
-    public static List<List<Integer>> mergeIntervals(List<List<Integer>> intervals) {
-        if (intervals == null || intervals.isEmpty()) {
-            return new ArrayList<>();
+    public FilePartials extractPartials(String fileContent, List<ReqPartialMusic> requests) throws Exception {
+        List<List<String>> segments = new ArrayList<>(requests.size());
+
+        boolean allHaveOffsets = true;
+        for (ReqPartialMusic request : requests) {
+            allHaveOffsets &= hasUsableOffsets(request.getSource(), fileContent.length());
+        }
+        if (allHaveOffsets) {
+            for (ReqPartialMusic request : requests) {
+                List<Integer> startMeasures = new ArrayList<>();
+                List<Integer> endMeasures = new ArrayList<>();
+                getHighlightMeasures(request, startMeasures, endMeasures);
+                segments.add(sliceMeasureSegments(fileContent, request.getSource(), startMeasures, endMeasures));
+            }
+            return new FilePartials(segments, sliceMeiSkeleton(fileContent, requests.get(0).getSource().getSkeleton_ranges()));
         }
 
-        intervals.sort(Comparator.comparingInt(interval -> interval.get(0)));
-        List<List<Integer>> merged = new ArrayList<>();
-        List<Integer> current = new ArrayList<>(intervals.get(0));
+        // Every hit's ranges are extracted from the one DOM together, then split back up by hit
+        List<Integer> startMeasures = new ArrayList<>();
+        List<Integer> endMeasures = new ArrayList<>();
+        int[] rangeCounts = new int[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            int before = startMeasures.size();
+            getHighlightMeasures(requests.get(i), startMeasures, endMeasures);
+            rangeCounts[i] = startMeasures.size() - before;
+        }
 
-        for (int i = 1; i < intervals.size(); i++) {
-            List<Integer> next = intervals.get(i);
+        org.w3c.dom.Document domDocument = parseWithFirstSectionOnly(fileContent);
+        List<String> extractedSegments = extractMeasureSegments(domDocument, startMeasures, endMeasures);
+        String meiSkeleton = extractMeiSkeleton(domDocument);
 
-            if (current.get(1) >= next.get(0) - 1) {
-                current.set(1, Math.max(current.get(1), next.get(1)));
-            } else {
-                merged.add(new ArrayList<>(current));
-                current = new ArrayList<>(next);
-            }
+        int from = 0;
+        for (int rangeCount : rangeCounts) {
+            // A failed extraction gives fewer segments than ranges, so a hit may get fewer than it asked for
+            int to = Math.min(from + rangeCount, extractedSegments.size());
+            segments.add(new ArrayList<>(extractedSegments.subList(Math.min(from, to), to)));
+            from += rangeCount;
         }
+        return new FilePartials(segments, meiSkeleton);
+    }
 
-        merged.add(current);
-        return merged;
+    /**
+     * Receives the segments of a partial as they are extracted
+     */
+    @FunctionalInterface
+    public interface SegmentConsumer {
+        void accept(String segment) throws IOException;
     }
 
     /**
-     * Extracts specific segments of MEI sheet music from a file stored in a PostgreSQL database.
-     * The segments correspond to the overlapping highlighted measures defined in the request.
+     * Receives a streamed partial: the skeleton first, then each segment as soon as it is extracted
+     */
+    public interface PartialSink extends SegmentConsumer {
+        void skeleton(String meiSkeleton) throws IOException;
+    }
+
+    /**
+     * Streaming version of {@link #getPartial}. Rather than collecting every segment before returning, it hands the
+     * skeleton to {@code sink} first, then each segment the moment it is extracted, so a client can render the first
+     * match while later ones are still being produced.
      *
-     * @param request The {@link ReqPartialMusic} containing highlight information and file reference.
-     * @return A {@link ResPartialSheetMusic} object containing either the matched MEI segments or an error message.
+     * @param request The {@link ReqPartialMusic} containing matches or highlight information and file reference.
+     * @param sink    Receives the skeleton and then the segments, in order.
+     * @return How the partial ended: successful, or unsuccessful with an error message. Nothing has been handed to
+     * {@code sink} if the file couldn't be found or parsed, but a partial may fail part way through.
+     * @throws IOException if {@code sink} fails, e.g. because the client went away.
      */
-    public ResPartialSheetMusic getPartial(ReqPartialMusic request) {
+    public ResPartialSheetMusic streamPartial(ReqPartialMusic request, PartialSink sink) throws IOException {
+        if (!hasMatchesOrHighlight(request)) return new ResPartialSheetMusic(NO_MATCHES_MESSAGE, false);
         String fileContent = Indexer.getFileByName(request.getSource().getName());
         if (fileContent == null) return new ResPartialSheetMusic("File not found in database", false);
-        System.out.println("File content in getPartial: "+fileContent);
 
         List<Integer> startMeasures = new ArrayList<>();
         List<Integer> endMeasures = new ArrayList<>();
-        getHighlightMeasures(request, startMeasures, endMeasures);
-
+        org.w3c.dom.Document domDocument = null;
         try {
-            DocumentParser documentParser = new DocumentParser();
-            // Create temporary file from database content for parsers use only
-            File tempFile = createTempFileFromContent(fileContent);
-            // Set the file
-            documentParser.setInFile(tempFile);
-            // Parse the file
-            org.w3c.dom.Document domDocument = documentParser.getDOMDocument();
-            // Delete the file
-            tempFile.delete();
-
-            System.out.println("DOM doc toString: "+DocumentParser.documentToString(domDocument));
-
-            // Remove all 'section' elements, except the first, in a clone
-            NodeList sectionElements = domDocument.getElementsByTagName("section");
-            if (sectionElements.getLength() == 0) {
-                throw new Exception("No 'section' elements found in getPartial");
+            getHighlightMeasures(request, startMeasures, endMeasures);
+            if (!hasUsableOffsets(request.getSource(), fileContent.length())) {
+                domDocument = parseWithFirstSectionOnly(fileContent);
             }
+        } catch (Exception e) {
+            System.err.println("Error parsing MEI document: " + e.getMessage());
+            return new ResPartialSheetMusic("Error parsing document", false);
+        }
 
-            if (sectionElements.getLength() > 1) {
-                System.out.println("Multiple 'section' elements found in getPartial. Removing all but one");
-                // Collect nodes to remove (can't remove while iterating due to live NodeList)
-                List<Node> sectionsToRemove = new ArrayList<>();
-                for (int i = 1; i < sectionElements.getLength(); i++){
-                    sectionsToRemove.add(sectionElements.item(i));
-                }
-                // Remove extra sections
-                for (Node section : sectionsToRemove) {
-                    section.getParentNode().removeChild(section);
-                }
+        if (domDocument == null) {
+            sink.skeleton(sliceMeiSkeleton(fileContent, request.getSource().getSkeleton_ranges()));
+            sliceMeasureSegments(fileContent, request.getSource(), startMeasures, endMeasures, sink);
+        } else {
+            sink.skeleton(extractMeiSkeleton(domDocument));
+            extractMeasureSegments(domDocument, startMeasures, endMeasures, sink);
+        }
+        return new ResPartialSheetMusic(null, true);
+    }
+
+    /**
+     * Parses a file into a DOM, and removes all 'section' elements but the first from it
+     *
+     * @throws Exception if the file can't be parsed or has no 'section' element
+     */
+    private static org.w3c.dom.Document parseWithFirstSectionOnly(String fileContent) throws Exception {
+        DocumentParser documentParser = new DocumentParser();
+        // Parse straight from the database content in memory
+        documentParser.setInReader(new StringReader(fileContent));
+        org.w3c.dom.Document domDocument = documentParser.getDOMDocument();
+
+        NodeList sectionElements = domDocument.getElementsByTagName("section");
+        if (sectionElements.getLength() == 0) {
+            throw new Exception("No 'section' elements found in getPartial");
+        }
+
+        if (sectionElements.getLength() > 1) {
+            System.out.println("Multiple 'section' elements found in getPartial. Removing all but one");
+            // Collect nodes to remove (can't remove while iterating due to live NodeList)
+            List<Node> sectionsToRemove = new ArrayList<>();
+            for (int i = 1; i < sectionElements.getLength(); i++){
+                sectionsToRemove.add(sectionElements.item(i));
+            }
+            // Remove extra sections
+            for (Node section : sectionsToRemove) {
+                section.getParentNode().removeChild(section);
             }
+        }
+        return domDocument;
+    }
 
-            // We need to extract the segments before we extract the skeleton, as extracting the skeleton
-            // deletes the object data inside the 'section' tag (which holds the measures)
-            List<String> extractedSegments = extractMeasureSegments(domDocument, startMeasures, endMeasures);
-            String meiSkeleton = extractMeiSkeleton(domDocument);
+    /**
+     * Checks that a source has all three offset arrays, in whole entries, and that none of them reach past the end
+     * of the file, so a stale or hand-made source falls back to parsing rather than cutting out the wrong text.
+     */
+    private static boolean hasUsableOffsets(Record source, int fileLength) {
+        int[] measures = source.getMeasure_offsets();
+        int[] keySigs = source.getKeysig_offsets();
+        int[] skeleton = source.getSkeleton_ranges();
+        if (measures == null || keySigs == null || skeleton == null) return false;
+        if (measures.length % 2 != 0 || keySigs.length % 3 != 0 || skeleton.length % 2 != 0) return false;
+        return rangesFit(measures, 2, fileLength) && rangesFit(keySigs, 3, fileLength) && rangesFit(skeleton, 2, fileLength);
+    }
 
-            return new ResPartialSheetMusic(null, true, extractedSegments, meiSkeleton);
+    private static boolean rangesFit(int[] offsets, int stride, int fileLength) {
+        for (int i = 0; i < offsets.length; i += stride) {
+            if (offsets[i] < 0 || offsets[i] > offsets[i + 1] || offsets[i + 1] > fileLength) return false;
+        }
+        return true;
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error parsing MEI document: " + e.getMessage());
-            return new ResPartialSheetMusic("Error parsing document", false);
+    /**
+     * Cuts the specified measure segments out of the stored file, each led by the last key signature before it,
+     * just as {@link #extractMeasureSegments} builds them from the DOM.
+     */
+    private static List<String> sliceMeasureSegments(String fileContent, Record source,
+                                                     List<Integer> startMeasures,
+                                                     List<Integer> endMeasures) throws IOException {
+        List<String> segments = new ArrayList<>(startMeasures.size());
+        sliceMeasureSegments(fileContent, source, startMeasures, endMeasures, segments::add);
+        return segments;
+    }
+
+    /**
+     * Cuts the specified measure segments out of the stored file, handing each to {@code onSegment} as soon as it
+     * is cut.
+     */
+    private static void sliceMeasureSegments(String fileContent, Record source,
+                                             List<Integer> startMeasures,
+                                             List<Integer> endMeasures,
+                                             SegmentConsumer onSegment) throws IOException {
+        int[] measures = source.getMeasure_offsets();
+        int[] keySigs = source.getKeysig_offsets();
+        int measureCount = measures.length / 2;
+
+        for (int segmentIndex = 0; segmentIndex < startMeasures.size(); segmentIndex++) {
+            int startMeasure = startMeasures.get(segmentIndex);
+            int endMeasure = Math.min(endMeasures.get(segmentIndex), measureCount - 1);
+
+            StringBuilder segmentBuilder = new StringBuilder();
+
+            // The key signatures are in document order, so the last one starting before our first measure governs it
+            int relevantKeySig = -1;
+            for (int i = 0; i < keySigs.length && keySigs[i + 2] < startMeasure; i += 3) {
+                relevantKeySig = i;
+            }
+            if (relevantKeySig >= 0) {
+                segmentBuilder.append(fileContent, keySigs[relevantKeySig], keySigs[relevantKeySig + 1]).append("\n");
+            }
+
+            for (int measure = Math.max(startMeasure, 0); measure <= endMeasure; measure++) {
+                segmentBuilder.append(fileContent, measures[2 * measure], measures[2 * measure + 1]).append("\n");
+            }
+
+            onSegment.accept(segmentBuilder.toString());
         }
     }
 
     /**
-     * Creates a temporary file from the database content string.
+     * Joins the skeleton ranges of the stored file, giving the root element with the first section emptied
      */
-    private File createTempFileFromContent(String content) throws IOException {
-        File tempFile = File.createTempFile("temp_mei", ".xml");
-        try (FileWriter writer = new FileWriter(tempFile)) {
-            writer.write(content);
+    private static String sliceMeiSkeleton(String fileContent, int[] skeletonRanges) {
+        StringBuilder skeleton = new StringBuilder();
+        for (int i = 0; i < skeletonRanges.length; i += 2) {
+            skeleton.append(fileContent, skeletonRanges[i], skeletonRanges[i + 1]);
         }
-        return tempFile;
+        return skeleton.toString();
     }
 
     /**
@@ -322,9 +526,19 @@ public class PartialSheetMusic {
      */
     private List<String> extractMeasureSegments(org.w3c.dom.Document doc,
                                                 List<Integer> startMeasures,
-                                                List<Integer> endMeasures) {
+                                                List<Integer> endMeasures) throws IOException {
         List<String> segments = new ArrayList<>();
+        extractMeasureSegments(doc, startMeasures, endMeasures, segments::add);
+        return segments;
+    }
 
+    /**
+     * Extracts the specified measure segments, handing each to {@code onSegment} as soon as it is serialized.
+     */
+    private void extractMeasureSegments(org.w3c.dom.Document doc,
+                                        List<Integer> startMeasures,
+                                        List<Integer> endMeasures,
+                                        SegmentConsumer onSegment) throws IOException {
         try {
             // Get all keySig and measure elements in document order from the 'section' tag
             NodeList nodeList = doc.getElementsByTagName("section");
@@ -364,18 +578,19 @@ public class PartialSheetMusic {
                     }
                 }
 
-                segments.add(segmentBuilder.toString());
+                onSegment.accept(segmentBuilder.toString());
             }
 
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("Error extracting measure segments: " + e.getMessage());
         }
-
-        return segments;
     }
 
     /**
-     * Removes everything inside the <section> tag, to be populated with measures in the frontend
+     * Serializes the document with everything inside the <section> tag removed, to be populated with measures in the
+     * frontend. The section's children are put back afterwards, so segments can still be extracted from it.
      */
     private String extractMeiSkeleton(org.w3c.dom.Document doc) {
         try {
@@ -396,7 +611,12 @@ public class PartialSheetMusic {
                 firstSection.removeChild(child);
             }
 
-            return elementToStringWithoutXmlDeclaration(doc.getDocumentElement());
+            String skeleton = elementToStringWithoutXmlDeclaration(doc.getDocumentElement());
+
+            for (Node child : toRemove) {
+                firstSection.appendChild(child);
+            }
+            return skeleton;
 
         } catch (Exception e) {
             System.err.println("Error extracting MEI skeleton: " + e.getMessage());
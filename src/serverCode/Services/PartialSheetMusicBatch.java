@@ -0,0 +1,97 @@
+package serverCode.Services;
+
+import serverCode.Requests.ReqPartialMusic;
+import serverCode.Requests.ReqPartialMusicBatch;
+import serverCode.Responses.ResPartialSheetMusic;
+import serverCode.Responses.ResPartialSheetMusicBatch;
+import workers.Indexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Service responsible for the partial sheet music of a whole page of search hits at once. Every file the hits are on
+ * is fetched in a single query, then each file's hits are extracted together, in parallel with the other files, so
+ * a file is parsed at most once and its skeleton is sent once however many hits are on it.
+ */
+public class PartialSheetMusicBatch {
+
+    /**
+     * Extracts the partial sheet music of every hit in the request. A hit that fails does not stop the others.
+     *
+     * @param request A {@link ReqPartialMusicBatch} holding one {@link ReqPartialMusic} per hit.
+     * @return A {@link ResPartialSheetMusicBatch} with one result per hit, in request order, and the skeleton of
+     * each file. It is only unsuccessful if the request held no hits, or the files couldn't be fetched; per-hit
+     * failures are reported in its results.
+     */
+    public ResPartialSheetMusicBatch getPartials(ReqPartialMusicBatch request) {
+        List<ReqPartialMusic> hits = (request == null) ? null : request.getHits();
+        if (hits == null || hits.isEmpty()) {
+            return new ResPartialSheetMusicBatch("No hits in batch.", false);
+        }
+
+        int size = hits.size();
+        ResPartialSheetMusic[] results = new ResPartialSheetMusic[size];
+
+        // The position of each hit in the request, grouped by the file it is on
+        Map<String, List<Integer>> positionsByFile = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            ReqPartialMusic hit = hits.get(i);
+            if (hit == null || hit.getSource() == null || hit.getSource().getName() == null) {
+                results[i] = new ResPartialSheetMusic("Hit has no source file", false);
+            } else if (!PartialSheetMusic.hasMatchesOrHighlight(hit)) {
+                results[i] = new ResPartialSheetMusic(PartialSheetMusic.NO_MATCHES_MESSAGE, false);
+            } else {
+                positionsByFile.computeIfAbsent(hit.getSource().getName(), name -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Map<String, String> fileContents = positionsByFile.isEmpty()
+                ? Map.of() : Indexer.getFilesByNames(positionsByFile.keySet());
+        if (fileContents == null) {
+            return new ResPartialSheetMusicBatch("Couldn't fetch files from database", false);
+        }
+
+        // Extraction is CPU-bound and independent per file
+        List<String> fileNames = new ArrayList<>(positionsByFile.keySet());
+        Map<String, String> skeletons = new ConcurrentHashMap<>();
+        PartialSheetMusic partialSheetMusic = new PartialSheetMusic();
+        IntStream.range(0, fileNames.size()).parallel().forEach(f -> {
+            String fileName = fileNames.get(f);
+            List<Integer> positions = positionsByFile.get(fileName);
+            String fileContent = fileContents.get(fileName);
+            if (fileContent == null) {
+                for (int position : positions) {
+                    results[position] = new ResPartialSheetMusic("File not found in database", false);
+                }
+                return;
+            }
+
+            List<ReqPartialMusic> fileHits = new ArrayList<>(positions.size());
+            for (int position : positions) {
+                fileHits.add(hits.get(position));
+            }
+            try {
+                PartialSheetMusic.FilePartials partials = partialSheetMusic.extractPartials(fileContent, fileHits);
+                skeletons.put(fileName, partials.meiSkeleton());
+                for (int i = 0; i < positions.size(); i++) {
+                    results[positions.get(i)] = new ResPartialSheetMusic(null, true, partials.segments().get(i), null);
+                }
+            } catch (Exception e) {
+                System.err.println("Error parsing MEI document " + fileName + ": " + e.getMessage());
+                for (int position : positions) {
+                    results[position] = new ResPartialSheetMusic("Error parsing document", false);
+                }
+            }
+        });
+
+        int failed = (int) Arrays.stream(results).filter(result -> !result.isSuccess()).count();
+        String message = (failed == 0) ? null : failed + " of " + size + " hits failed.";
+        return new ResPartialSheetMusicBatch(message, true, skeletons, Arrays.asList(results));
+    }
+}
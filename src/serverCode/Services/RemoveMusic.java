@@ -11,8 +11,10 @@ import java.io.IOException;
  */
 public class RemoveMusic extends BASE_SERVICE {
     public ResRemoveMusic remove(ReqRemoveMusic request) throws IOException {
-        ElasticProcessor elasticProcessor = new ElasticProcessor();
+        ElasticProcessor elasticProcessor = ElasticProcessor.getInstance();
+        String removeResult = elasticProcessor.removeRecord(request.getName()).toString();
+        SearchMusic.invalidateCachedResults();
 
-        return new ResRemoveMusic(null, true, elasticProcessor.removeRecord(request.getName()).toString());
+        return new ResRemoveMusic(null, true, removeResult);
     }
 }
@@ -1,76 +1,320 @@
 package serverCode.Services;
 
-import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import music.Document;
-import parsers.DocumentParser;
+import parsers.StreamingDocumentParser;
 import serverCode.Requests.ReqSearchMusic;
+import serverCode.Responses.MusicHit;
 import serverCode.Responses.ResSearchMusic;
 import workers.ElasticProcessor;
+import workers.PhraseSearch;
 import workers.Record;
+import workers.SearchCache;
+import workers.SearchCursor;
+import workers.SearchKey;
+import workers.SingleFlight;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static workers.EnvConfig.getIntEnv;
 
 /**
  * This class is responsible for all searching done on the {@link ElasticProcessor} backend.
+ * <p>
+ * Popular searches repeat a lot, so two caches sit in front of Elasticsearch, both sized by
+ * {@code SEARCH_CACHE_MAX_ENTRIES} (default 1000) and expiring after {@code SEARCH_CACHE_TTL_SECONDS} (default 60):
+ * one from MEI chunks to their parsed interval strings, and one from {@link SearchKey SearchKeys} to first pages
+ * of results. Any service that changes the index must call {@link #invalidateCachedResults()}.
+ * </p>
  */
 public class SearchMusic extends BASE_SERVICE {
+    // Every search, batched or not, is run with the same settings
+    static final int SLOP = 0;
+    static final String HIGHLIGHTER = "fvh";
+    static final double MIN_SCORE = 0.0;
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    /**
+     * The pseudo-field a request names in its fields to get the highlight text of each hit
+     */
+    static final String HIGHLIGHT_FIELD = "highlight";
+    /**
+     * Every hit's measure ranges are worked out from this, so it is always fetched, and dropped again if not asked for
+     */
+    static final String MEASURE_MAP_FIELD = "measure_map_as_array";
+
+    private static final int CACHE_MAX_ENTRIES = getIntEnv("SEARCH_CACHE_MAX_ENTRIES", 1000);
+    private static final long CACHE_TTL_MILLIS = getIntEnv("SEARCH_CACHE_TTL_SECONDS", 60) * 1000L;
+    /**
+     * Parsing doesn't depend on the index, so this one is never invalidated
+     */
+    private static final SearchCache<String, String> PARSE_CACHE = new SearchCache<>(CACHE_MAX_ENTRIES, CACHE_TTL_MILLIS);
+    private static final SearchCache<SearchKey, ResSearchMusic> RESULT_CACHE = new SearchCache<>(CACHE_MAX_ENTRIES, CACHE_TTL_MILLIS);
+    /**
+     * Identical searches that miss the caches at the same time share one parse and one Elasticsearch query
+     */
+    private static final SingleFlight<String, String> PARSE_FLIGHTS = new SingleFlight<>();
+    private static final SingleFlight<SearchKey, ResSearchMusic> SEARCH_FLIGHTS = new SingleFlight<>();
+
+    /**
+     * Drops every cached search result. Must be called after anything is added to, removed from, or recreated in
+     * the index, so searches never serve results from before the change. The change must already be searchable,
+     * as the writes in {@link ElasticProcessor} make sure it is, or a search in between could cache the old results
+     * again under the new generation.
+     */
+    public static void invalidateCachedResults() {
+        RESULT_CACHE.invalidate();
+        SEARCH_FLIGHTS.forgetAll();
+    }
+
+    /**
+     * @return the cache of parsed MEI chunks, for its metrics
+     */
+    public static SearchCache<String, String> getParseCache() {
+        return PARSE_CACHE;
+    }
+
+    /**
+     * @return the cache of search results, for its metrics
+     */
+    public static SearchCache<SearchKey, ResSearchMusic> getResultCache() {
+        return RESULT_CACHE;
+    }
+
+    /**
+     * @return the coalescing of concurrent parses, for its metrics
+     */
+    public static SingleFlight<String, String> getParseFlights() {
+        return PARSE_FLIGHTS;
+    }
+
+    /**
+     * @return the coalescing of concurrent searches, for its metrics
+     */
+    public static SingleFlight<SearchKey, ResSearchMusic> getSearchFlights() {
+        return SEARCH_FLIGHTS;
+    }
+
     /**
      * Executes a music search against {@link ElasticProcessor} using interval representation
-     * extracted from MEI data using {@link DocumentParser}. The MEI chunk is written to a temporary file, parsed,
+     * extracted from MEI data using {@link StreamingDocumentParser}. The MEI chunk is parsed in memory,
      * and then searched using logical operators and a phrase query.
      *
      * @param request the {@link ReqSearchMusic} object containing MEI content and logical filters
-     * @return a {@link ResSearchMusic} object containing the search results or an error
-     * @throws IOException if an error occurs writing the MEI chunk to a temporary file
+     * @return a {@link ResSearchMusic} object containing one page of the search results or an error
+     * @throws IOException if the MEI chunk can't be parsed
+     * @see #searchAsync
      */
     public ResSearchMusic search(ReqSearchMusic request) throws IOException {
-        System.out.println("Parsing search data...");
-        DocumentParser documentParser = new DocumentParser();
-        // Create temporary file from database content for parsers use only
-        File tempFile = createTempFileFromContent(request.getMeiChunk());
-        // Set the file
-        documentParser.setInFile(tempFile);
-        // Parse the file
-        Document parsedDocument = documentParser.getDocumentFromFile();
-        // Delete the file
-        tempFile.delete();
-
-        String intervalString = convertIntervalsToString(parsedDocument.getIntervalRep());
-        ElasticProcessor elasticProcessor = new ElasticProcessor();
-        SearchResponse<Record> searchResponse;
+        return searchAsync(request).join();
+    }
+
+    /**
+     * Non-blocking version of {@link #search}. The MEI chunk is parsed on the calling thread, then the search is
+     * handed to Elasticsearch and this method returns without waiting for it.
+     * <p>
+     * Results are paginated. A request without a cursor gets the first page straight from the index, and the
+     * response's cursor holds where it ended. Following that cursor opens a point in time (PIT) of the index, and
+     * each later cursor holds that PIT too, so every later page is read from the same snapshot with
+     * {@code search_after} instead of an ever deeper {@code from}. The PIT is closed once a page comes back short.
+     * Opening it only when a second page is asked for keeps a search that never goes past the first from holding a
+     * PIT open until it expires.
+     * </p>
+     * <p>
+     * First pages are cached, so a repeated search returns without contacting Elasticsearch, and identical first
+     * page searches running at the same time share a single query.
+     * </p>
+     *
+     * @param request the {@link ReqSearchMusic} object containing MEI content and logical filters
+     * @return a future of the {@link ResSearchMusic}. It never completes exceptionally; a failed search completes
+     * it with an unsuccessful response carrying the error message.
+     * @throws IOException if the MEI chunk can't be parsed
+     */
+    public CompletableFuture<ResSearchMusic> searchAsync(ReqSearchMusic request) throws IOException {
+        String intervalString = parseIntervalString(request.getMeiChunk());
+        int pageSize = pageSizeOf(request);
+        PhraseSearch search = new PhraseSearch(
+                intervalString,
+                request.getAndMap(),
+                request.getOrMap(),
+                request.getNotMap(),
+                SLOP,
+                HIGHLIGHTER,
+                MIN_SCORE,
+                pageSize,
+                sourceFieldsOf(request.getFields())
+        );
+        ElasticProcessor elasticProcessor = ElasticProcessor.getInstance();
+
+        if (request.getCursor() != null) {
+            SearchCursor cursor;
+            try {
+                cursor = SearchCursor.decode(request.getCursor());
+            } catch (IllegalArgumentException ex) {
+                return CompletableFuture.completedFuture(new ResSearchMusic("Invalid cursor.", false));
+            }
+            return followCursor(elasticProcessor, search, cursor, pageSize, request.getFields())
+                    .exceptionally(SearchMusic::toErrorResponse);
+        }
+
+        SearchKey key = new SearchKey(intervalString, request.getAndMap(), request.getOrMap(), request.getNotMap(),
+                pageSize, request.getFields());
+        ResSearchMusic cached = RESULT_CACHE.get(key);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+
+        long generation = RESULT_CACHE.generation();
+        return SEARCH_FLIGHTS.execute(key, () -> elasticProcessor.phraseQueryPageAsync(search, null, null)
+                .thenApply(searchResponse -> {
+                    ResSearchMusic response = toPage(elasticProcessor, searchResponse, pageSize, request.getFields());
+                    RESULT_CACHE.put(key, response, generation);
+                    return response;
+                })
+                .exceptionally(SearchMusic::toErrorResponse));
+    }
+
+    /**
+     * Reads the page a cursor points to. A cursor from a first page has no point in time (PIT), so one is opened for
+     * it here, and closed again if the page can't be read rather than left open until its keep alive runs out.
+     */
+    private CompletableFuture<ResSearchMusic> followCursor(ElasticProcessor elasticProcessor, PhraseSearch search, SearchCursor cursor, int pageSize, List<String> fields) {
+        if (cursor.getPitId() != null) {
+            return elasticProcessor.phraseQueryPageAsync(search, cursor.getPitId(), cursor.getSearchAfter())
+                    .thenApply(searchResponse -> toPage(elasticProcessor, searchResponse, pageSize, fields));
+        }
+
+        return elasticProcessor.openPointInTimeAsync().thenCompose(pitId -> {
+            CompletableFuture<ResSearchMusic> page;
+            try {
+                page = elasticProcessor.phraseQueryPageAsync(search, pitId, cursor.getSearchAfter())
+                        .thenApply(searchResponse -> toPage(elasticProcessor, searchResponse, pageSize, fields));
+            } catch (RuntimeException ex) {
+                page = CompletableFuture.failedFuture(ex);
+            }
+            return page.whenComplete((response, ex) -> {
+                if (ex != null) elasticProcessor.closePointInTimeAsync(pitId);
+            });
+        });
+    }
+
+    /**
+     * @param cursor the cursor of a request, null for the first page
+     * @return whether the cursor is null or one we handed out, so handlers can reject a bad one as a client error
+     */
+    public static boolean isValidCursor(String cursor) {
+        if (cursor == null) return true;
         try {
-            searchResponse = elasticProcessor.advancedPhraseQuery(
-                    intervalString,
-                    request.getAndMap(),
-                    request.getOrMap(),
-                    request.getNotMap(),
-                    0,
-                    "fvh",
-                    0.0,
-                    10_000
-            );
-            return new ResSearchMusic(convertHitListToArray(searchResponse.hits().hits()));
-        } catch (ElasticsearchException ex) {
-            return new ResSearchMusic(ex.getMessage(), false);
+            SearchCursor.decode(cursor);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            return false;
         }
     }
 
     /**
-     * Creates a temporary file from the database content string.
+     * Turns a failed search into an unsuccessful response carrying its error message.
+     */
+    private static ResSearchMusic toErrorResponse(Throwable ex) {
+        Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+        return new ResSearchMusic(cause.getMessage(), false);
+    }
+
+    /**
+     * Reads the page size of a request, falling back to {@code DEFAULT_PAGE_SIZE} and capped at
+     * {@code MAX_PAGE_SIZE}.
      */
-    private File createTempFileFromContent(String content) throws IOException {
-        File tempFile = File.createTempFile("temp_mei", ".xml");
-        try (FileWriter writer = new FileWriter(tempFile)) {
-            writer.write(content);
+    static int pageSizeOf(ReqSearchMusic request) {
+        Integer pageSize = request.getPageSize();
+        if (pageSize == null || pageSize <= 0) return DEFAULT_PAGE_SIZE;
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * A request that doesn't narrow its fields gets everything, highlight included, as clients that send the
+     * highlight back to /partialSheetMusic rely on it.
+     *
+     * @return whether hits should carry their highlight text, as well as their match positions
+     */
+    static boolean wantsHighlight(List<String> fields) {
+        return fields == null || fields.isEmpty() || fields.contains(HIGHLIGHT_FIELD);
+    }
+
+    /**
+     * The {@code _source} fields to fetch for the fields a request asked for: the same, plus the measure map
+     *
+     * @param fields the fields the request asked for, null for all
+     * @return the fields to fetch, null for all
+     */
+    static List<String> sourceFieldsOf(List<String> fields) {
+        if (fields == null || fields.isEmpty() || fields.contains(MEASURE_MAP_FIELD)) return fields;
+        List<String> sourceFields = new ArrayList<>(fields.size() + 1);
+        sourceFields.addAll(fields);
+        sourceFields.add(MEASURE_MAP_FIELD);
+        return sourceFields;
+    }
+
+    /**
+     * Turns one page of search results into a response, with the cursor of the next page if there may be one.
+     * A short page is the last, so its point in time, if it has one, is closed.
+     */
+    private ResSearchMusic toPage(ElasticProcessor elasticProcessor, SearchResponse<Record> searchResponse, int pageSize, List<String> fields) {
+        List<Hit<Record>> hits = searchResponse.hits().hits();
+        String nextCursor = null;
+        if (hits.size() < pageSize) {
+            if (searchResponse.pitId() != null) elasticProcessor.closePointInTimeAsync(searchResponse.pitId());
+        } else {
+            Hit<Record> last = hits.get(hits.size() - 1);
+            nextCursor = new SearchCursor(searchResponse.pitId(), last.sort()).encode();
         }
-        return tempFile;
+        return new ResSearchMusic(convertHitListToArray(hits, fields), nextCursor);
+    }
+
+    /**
+     * Parses an MEI chunk into the space-separated interval string we search {@code intervals_text} with. Results
+     * are cached, and concurrent calls for the same chunk share one parse.
+     *
+     * @param meiChunk the MEI content of the search
+     * @return the intervals of the chunk, e.g. {@code "2 2 -4"}
+     * @throws IOException if the MEI chunk can't be parsed
+     */
+    String parseIntervalString(String meiChunk) throws IOException {
+        if (meiChunk == null) return parseMeiChunk(null);
+        String cached = PARSE_CACHE.get(meiChunk);
+        if (cached != null) return cached;
+
+        long generation = PARSE_CACHE.generation();
+        try {
+            return PARSE_FLIGHTS.execute(meiChunk, () -> {
+                try {
+                    String intervalString = parseMeiChunk(meiChunk);
+                    PARSE_CACHE.put(meiChunk, intervalString, generation);
+                    return CompletableFuture.completedFuture(intervalString);
+                } catch (IOException ex) {
+                    return CompletableFuture.failedFuture(ex);
+                }
+            }).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException ioException) throw ioException;
+            if (ex.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw ex;
+        }
+    }
+
+    /**
+     * Does the actual parsing for {@link #parseIntervalString}, without any caching.
+     */
+    private String parseMeiChunk(String meiChunk) throws IOException {
+        System.out.println("Parsing search data...");
+        // A search only needs the intervals, so stream the chunk rather than build a DOM of it
+        Document parsedDocument = new StreamingDocumentParser().parse(new StringReader(meiChunk));
+
+        return convertIntervalsToString(parsedDocument.getIntervalRep());
     }
 
     /**
@@ -89,16 +333,29 @@ public class SearchMusic extends BASE_SERVICE {
     }
 
     /**
-     * Converts a {@link List} of {@link Hit} objects to a raw array.
+     * Converts a {@link List} of {@link Hit} objects to a raw array of the {@link MusicHit MusicHits} we send, each
+     * with the measure ranges its matches cover, so a page of results can show where each hit matched without a
+     * partial sheet music request per hit.
      *
-     * @param hitList the list of hits
-     * @return an array of {@link Hit} objects
+     * @param hitList the list of hits, fetched with {@link #sourceFieldsOf} the fields
+     * @param fields  the fields the request asked for, null for all
+     * @return an array of {@link MusicHit} objects
      */
-    private Hit<Record>[] convertHitListToArray(List<Hit<Record>> hitList) {
-        @SuppressWarnings("unchecked")
-        Hit<Record>[] hitArray = new Hit[hitList.size()];
+    MusicHit[] convertHitListToArray(List<Hit<Record>> hitList, List<String> fields) {
+        boolean withHighlight = wantsHighlight(fields);
+        boolean dropMeasureMap = fields != null && !fields.isEmpty() && !fields.contains(MEASURE_MAP_FIELD);
+
+        MusicHit[] hitArray = new MusicHit[hitList.size()];
         for (int i = 0; i < hitList.size(); i++) {
-            hitArray[i] = hitList.get(i);
+            Hit<Record> hit = hitList.get(i);
+            int[] measureMap = (hit.source() == null) ? null : PartialSheetMusic.measureMapOf(hit.source());
+            if (dropMeasureMap && hit.source() != null) hit.source().setMeasure_map_as_array(null);
+
+            MusicHit musicHit = MusicHit.fromHit(hit, withHighlight);
+            if (measureMap != null && musicHit.getMatches() != null) {
+                musicHit.setMeasureRanges(PartialSheetMusic.getMeasuresOfMatches(musicHit.getMatches(), measureMap));
+            }
+            hitArray[i] = musicHit;
         }
         return hitArray;
     }
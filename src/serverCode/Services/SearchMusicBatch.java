@@ -0,0 +1,125 @@
+package serverCode.Services;
+
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import serverCode.Requests.ReqSearchMusic;
+import serverCode.Requests.ReqSearchMusicBatch;
+import serverCode.Responses.ResSearchMusic;
+import serverCode.Responses.ResSearchMusicBatch;
+import workers.ElasticProcessor;
+import workers.PhraseSearch;
+import workers.Record;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+/**
+ * Service responsible for running many searches at once. The MEI chunks are parsed in parallel, then every search
+ * is sent to ElasticSearch in a single {@code _msearch} request.
+ * <p>
+ * Each search returns its first page of {@link ReqSearchMusic#getPageSize()} hits, without a cursor. Deeper pages
+ * are read one search at a time through {@link SearchMusic}, so a search in the batch that carries a cursor fails
+ * rather than silently getting a first page.
+ * </p>
+ */
+public class SearchMusicBatch extends BASE_SERVICE {
+
+    /**
+     * Parses every search in the request and runs them together. A search that fails to parse or is rejected by
+     * ElasticSearch does not stop the others.
+     *
+     * @param request A {@link ReqSearchMusicBatch} holding one {@link ReqSearchMusic} per search.
+     * @return A future of the {@link ResSearchMusicBatch}, with one result per search in request order. It never
+     * completes exceptionally, and is only unsuccessful if the request held no searches at all; per-search failures
+     * are reported in its results.
+     */
+    public CompletableFuture<ResSearchMusicBatch> searchAsync(ReqSearchMusicBatch request) {
+        List<ReqSearchMusic> searches = (request == null) ? null : request.getSearches();
+        if (searches == null || searches.isEmpty()) {
+            return CompletableFuture.completedFuture(new ResSearchMusicBatch("No searches in batch.", false));
+        }
+
+        int size = searches.size();
+        ResSearchMusic[] results = new ResSearchMusic[size];
+        PhraseSearch[] phraseSearches = new PhraseSearch[size];
+
+        // Parsing is CPU-bound and independent per search
+        SearchMusic searchMusic = new SearchMusic();
+        IntStream.range(0, size).parallel().forEach(i -> {
+            try {
+                ReqSearchMusic search = searches.get(i);
+                if (search.getCursor() != null) {
+                    results[i] = new ResSearchMusic("Cursors aren't supported in batch searches.", false);
+                    return;
+                }
+                phraseSearches[i] = new PhraseSearch(
+                        searchMusic.parseIntervalString(search.getMeiChunk()),
+                        search.getAndMap(),
+                        search.getOrMap(),
+                        search.getNotMap(),
+                        SearchMusic.SLOP,
+                        SearchMusic.HIGHLIGHTER,
+                        SearchMusic.MIN_SCORE,
+                        SearchMusic.pageSizeOf(search),
+                        SearchMusic.sourceFieldsOf(search.getFields())
+                );
+            } catch (Exception e) {
+                results[i] = new ResSearchMusic("Couldn't parse search: " + e, false);
+            }
+        });
+
+        List<Integer> parsedPositions = new ArrayList<>();
+        List<PhraseSearch> parsedSearches = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (phraseSearches[i] != null) {
+                parsedPositions.add(i);
+                parsedSearches.add(phraseSearches[i]);
+            }
+        }
+
+        if (parsedSearches.isEmpty()) {
+            return CompletableFuture.completedFuture(new ResSearchMusicBatch(Arrays.asList(results)));
+        }
+
+        CompletableFuture<List<MultiSearchResponseItem<Record>>> responses;
+        try {
+            responses = ElasticProcessor.getInstance().multiPhraseQueryAsync(parsedSearches)
+                    .thenApply(msearchResponse -> msearchResponse.responses());
+        } catch (Exception e) {
+            responses = CompletableFuture.failedFuture(e);
+        }
+
+        return responses
+                .thenApply(items -> {
+                    for (int i = 0; i < parsedPositions.size(); i++) {
+                        MultiSearchResponseItem<Record> item = (i < items.size()) ? items.get(i) : null;
+                        int position = parsedPositions.get(i);
+                        results[position] = toResult(searchMusic, item, searches.get(position).getFields());
+                    }
+                    return new ResSearchMusicBatch(Arrays.asList(results));
+                })
+                .exceptionally(ex -> {
+                    Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+                    for (int position : parsedPositions) {
+                        results[position] = new ResSearchMusic("Multi search failed: " + cause.getMessage(), false);
+                    }
+                    return new ResSearchMusicBatch(Arrays.asList(results));
+                });
+    }
+
+    /**
+     * Turns one item of a {@code _msearch} response into the result of its search.
+     */
+    private ResSearchMusic toResult(SearchMusic searchMusic, MultiSearchResponseItem<Record> item, List<String> fields) {
+        if (item == null) {
+            return new ResSearchMusic("No multi search response for search.", false);
+        }
+        if (item.isFailure()) {
+            return new ResSearchMusic(item.failure().error().reason(), false);
+        }
+        return new ResSearchMusic(searchMusic.convertHitListToArray(item.result().hits().hits(), fields));
+    }
+}
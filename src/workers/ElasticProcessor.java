@@ -1,10 +1,18 @@
 package workers;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.mapping.*;
 import co.elastic.clients.elasticsearch._types.query_dsl.*;
 import co.elastic.clients.elasticsearch.core.*;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultisearchBody;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
 import co.elastic.clients.elasticsearch.core.search.*;
 import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
 import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
@@ -15,7 +23,11 @@ import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
 import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
 import org.elasticsearch.client.RestClient;
 
 import java.io.IOException;
@@ -23,19 +35,51 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static workers.EnvConfig.getIntEnv;
+
 /**
  * This class handles all ElasticSearch functionality. It creates and uses a RestClient, pulls creds from the env,
  * and is the 'final destination' of most if not all api calls for searching, indexing, deleting, ect.
+ * <p>
+ * There is one client for the whole process, shared by every request. Get it through {@link #getInstance()}.
+ * Its transport is tuned from the env:
+ * <ul>
+ *   <li>{@code ELASTIC_IO_THREADS}: IO reactor threads, defaults to the number of processors</li>
+ *   <li>{@code ELASTIC_MAX_CONN_PER_ROUTE}: pooled connections to one node, defaults to 50</li>
+ *   <li>{@code ELASTIC_MAX_CONN_TOTAL}: pooled connections overall, defaults to 100</li>
+ *   <li>{@code ELASTIC_CONNECT_TIMEOUT_MS}: connect timeout, defaults to 1000</li>
+ *   <li>{@code ELASTIC_SOCKET_TIMEOUT_MS}: socket (read) timeout, defaults to 30000</li>
+ *   <li>{@code ELASTIC_COMPRESSION}: gzip request bodies and accept gzip responses, defaults to false</li>
+ *   <li>{@code ELASTIC_BULK_MAX_ACTIONS}: most records sent in one {@code _bulk} request, defaults to 500</li>
+ *   <li>{@code ELASTIC_BULK_MAX_BYTES}: rough cap on the body of one {@code _bulk} request, defaults to 5 MB</li>
+ * </ul>
+ * </p>
  */
 public class ElasticProcessor {
     private static final RestClient restClient;
+    private static final PoolingNHttpClientConnectionManager connectionManager;
     private static final ElasticsearchTransport transport;
     private static final ElasticsearchClient client;
+    /**
+     * Shares the transport (and so the connection pool) with {@link #client}, but never blocks the calling thread
+     */
+    private static final ElasticsearchAsyncClient asyncClient;
+    private static final ElasticProcessor INSTANCE = new ElasticProcessor();
 
     private static final String MUSIC_INDEX_NAME = "music";
+    private static final String PHRASE_FIELD = "intervals_text";
+    private static final String PIT_KEEP_ALIVE = "2m";
+    private static final String SHARD_DOC_FIELD = "_shard_doc";
+    /**
+     * How many values a page sorts by without a PIT: score and name
+     */
+    private static final int PAGE_SORT_FIELDS = 2;
+    private static final int BULK_MAX_ACTIONS = getIntEnv("ELASTIC_BULK_MAX_ACTIONS", 500);
+    private static final int BULK_MAX_BYTES = getIntEnv("ELASTIC_BULK_MAX_BYTES", 5 * 1024 * 1024);
 
     private static final Pattern PHRASE_OR_TERM = Pattern.compile("\"([^\"]+)\"|(\\S+)");  // group1=inside quotes, group2=a single token
 
@@ -48,16 +92,69 @@ public class ElasticProcessor {
         int port = Integer.parseInt(System.getenv("ELASTIC_PORT"));
         String scheme = "http";
 
+        int ioThreads = getIntEnv("ELASTIC_IO_THREADS", Runtime.getRuntime().availableProcessors());
+        int maxConnPerRoute = getIntEnv("ELASTIC_MAX_CONN_PER_ROUTE", 50);
+        int maxConnTotal = getIntEnv("ELASTIC_MAX_CONN_TOTAL", 100);
+        int connectTimeout = getIntEnv("ELASTIC_CONNECT_TIMEOUT_MS", 1000);
+        int socketTimeout = getIntEnv("ELASTIC_SOCKET_TIMEOUT_MS", 30_000);
+        boolean compression = Boolean.parseBoolean(System.getenv("ELASTIC_COMPRESSION"));
+
+        // We build the connection pool ourselves, so we can size it and read its stats
+        try {
+            connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(
+                    IOReactorConfig.custom()
+                            .setIoThreadCount(ioThreads)
+                            .setConnectTimeout(connectTimeout)
+                            .setSoTimeout(socketTimeout)
+                            .build()));
+        } catch (IOReactorException ex) {
+            throw new IllegalStateException("Could not start the Elasticsearch IO reactor", ex);
+        }
+        connectionManager.setMaxTotal(maxConnTotal);
+        connectionManager.setDefaultMaxPerRoute(maxConnPerRoute);
+
         restClient = RestClient
                 .builder(new HttpHost(host, port, scheme))
+                .setCompressionEnabled(compression)
+                .setRequestConfigCallback(rc -> rc
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(socketTimeout))
                 .setHttpClientConfigCallback(hc -> hc
                         .setDefaultCredentialsProvider(credProv)
-                        .setDefaultIOReactorConfig(IOReactorConfig.custom()
-                                .setIoThreadCount(2)  // Set a smaller thread pool size
-                                .build()))
+                        .setConnectionManager(connectionManager))
                 .build();
         transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
         client = new ElasticsearchClient(transport);
+        asyncClient = new ElasticsearchAsyncClient(transport);
+    }
+
+    private ElasticProcessor() {
+    }
+
+    /**
+     * @return the processor shared by the whole process
+     */
+    public static ElasticProcessor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gauges of the HTTP connection pool to Elasticsearch. A {@code pending} count above zero means requests are
+     * waiting on a connection, i.e. the pool, not Elasticsearch, is the bottleneck.
+     *
+     * @return the current leased, pending, available, and max connection counts across all routes
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Shuts down the client, its IO reactor threads, and every pooled connection. Only meant for server shutdown.
+     *
+     * @throws IOException if the transport fails to close
+     */
+    public void close() throws IOException {
+        transport.close();
     }
 
     /**
@@ -90,6 +187,11 @@ public class ElasticProcessor {
         ));
         // Add dynamic metadata field
         properties.put("mei_metadata", createDynamicObjectProperty());
+        // Offsets into the stored file are only ever read back, never searched
+        Property offsetsProperty = createStoredOnlyIntegerProperty();
+        properties.put("measure_offsets", offsetsProperty);
+        properties.put("keysig_offsets", offsetsProperty);
+        properties.put("skeleton_ranges", offsetsProperty);
 
         // Build mapping
         TypeMapping mapping = new TypeMapping.Builder()
@@ -150,6 +252,15 @@ public class ElasticProcessor {
                 .build();
     }
 
+    /**
+     * Creates an integer property that is kept in the source but not indexed, for arrays we only read back.
+     */
+    private Property createStoredOnlyIntegerProperty() {
+        return new Property.Builder()
+                .integer(i -> i.index(false).docValues(false))
+                .build();
+    }
+
     /**
      * Creates a property that allows for dynamic object mapping.
      */
@@ -165,6 +276,9 @@ public class ElasticProcessor {
      * <p>The document is indexed using the record's name as the document ID. If the document
      * already exists, it will be updated. If it does not, it will be created.
      *
+     * <p>It waits for the next refresh, so the record is searchable by the time this returns and search results
+     * cached before it can safely be dropped.
+     *
      * @param record The {@link Record} to index.
      * @return The {@link IndexResponse} from Elasticsearch.
      * @throws IOException If the indexing operation fails due to a network or IO issue.
@@ -174,16 +288,91 @@ public class ElasticProcessor {
                 .index(MUSIC_INDEX_NAME)
                 .id(record.getName())
                 .document(record)
+                .refresh(Refresh.WaitFor)
                 .build();
 
         return client.index(indexRequest);
     }
 
+    /**
+     * Indexes many {@link Record Records} into the "music" index with a single {@code _bulk} request. As with
+     * {@link #indexRecord}, each record's name is its document ID, and the records are searchable by the time
+     * this returns.
+     *
+     * <p>Callers with an unbounded number of records should split them with {@link #splitIntoBulkChunks} first.
+     *
+     * @param records The records to index.
+     * @return One {@link BulkResponseItem} per record, in the same order as {@code records}. Records Elasticsearch
+     * rejected have a non-null {@link BulkResponseItem#error()}.
+     * @throws IOException If the request as a whole fails due to a network or IO issue.
+     */
+    public List<BulkResponseItem> bulkIndexRecords(List<Record> records) throws IOException {
+        List<BulkOperation> operations = new ArrayList<>(records.size());
+        for (Record record : records) {
+            operations.add(new BulkOperation.Builder()
+                    .index(i -> i.index(MUSIC_INDEX_NAME).id(record.getName()).document(record))
+                    .build());
+        }
+
+        BulkRequest bulkRequest = new BulkRequest.Builder()
+                .operations(operations)
+                .refresh(Refresh.WaitFor)
+                .build();
+
+        return client.bulk(bulkRequest).items();
+    }
+
+    /**
+     * Splits records into chunks that each fit in one {@code _bulk} request, bounded both by
+     * {@code ELASTIC_BULK_MAX_ACTIONS} records and by {@code ELASTIC_BULK_MAX_BYTES} of (estimated) JSON.
+     * A single record over the byte bound gets a chunk of its own.
+     *
+     * @param records The records to split, order is kept.
+     * @return The consecutive chunks of {@code records}.
+     */
+    public List<List<Record>> splitIntoBulkChunks(List<Record> records) {
+        List<List<Record>> chunks = new ArrayList<>();
+        List<Record> current = new ArrayList<>();
+        long currentBytes = 0;
+
+        for (Record record : records) {
+            long recordBytes = estimateJsonSize(record);
+            if (!current.isEmpty() && (current.size() >= BULK_MAX_ACTIONS || currentBytes + recordBytes > BULK_MAX_BYTES)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(record);
+            currentBytes += recordBytes;
+        }
+
+        if (!current.isEmpty()) chunks.add(current);
+        return chunks;
+    }
+
+    /**
+     * A cheap upper-bound guess of a record's JSON size. The interval and measure arrays serialize to about as many
+     * characters as their text forms, so those are counted twice.
+     */
+    private long estimateJsonSize(Record record) {
+        long size = 256; // Field names, action line, and punctuation
+        size += (record.getName() == null) ? 0 : record.getName().length();
+        size += (record.getIntervals_text() == null) ? 0 : 2L * record.getIntervals_text().length();
+        size += (record.getMeasure_map() == null) ? 0 : 2L * record.getMeasure_map().length();
+        if (record.getMei_metadata() != null) {
+            for (Map.Entry<String, String> entry : record.getMei_metadata().entrySet()) {
+                size += entry.getKey().length() + ((entry.getValue() == null) ? 4 : entry.getValue().length()) + 6;
+            }
+        }
+        return size;
+    }
+
     /**
      * Removes a document from the "music" index based on its ID.
      *
      * <p>This is typically used to delete a previously indexed {@link Record}
-     * using its {@code name} as the identifier.
+     * using its {@code name} as the identifier. It waits for the next refresh, so searches stop finding the
+     * record by the time this returns.
      *
      * @param name The ID of the document to delete (corresponds to the record's name).
      * @return The {@link DeleteResponse} returned by Elasticsearch.
@@ -193,6 +382,7 @@ public class ElasticProcessor {
         DeleteRequest deleteRequest = new DeleteRequest.Builder()
                 .index(MUSIC_INDEX_NAME)
                 .id(name)
+                .refresh(Refresh.WaitFor)
                 .build();
 
         return client.delete(deleteRequest);
@@ -228,12 +418,207 @@ public class ElasticProcessor {
             double minScore,
             int maxResponses
     ) throws IOException {
-        String phraseField = "intervals_text";
+        return client.search(buildAdvancedPhraseRequest(
+                phrase, andMap, orMap, notMap, slop, highlighter, minScore, maxResponses), Record.class);
+    }
+
+    /**
+     * Non-blocking version of {@link #advancedPhraseQuery}. The request is sent on the client's IO reactor and the
+     * returned future completes on one of its threads, so callers should hop to their own executor before doing any
+     * heavy work in a callback.
+     *
+     * @return A future of the {@link SearchResponse}, completed exceptionally if the search fails.
+     * @see #advancedPhraseQuery
+     */
+    public CompletableFuture<SearchResponse<Record>> advancedPhraseQueryAsync(
+            String phrase,
+            Map<String, List<String>> andMap,
+            Map<String, List<String>> orMap,
+            Map<String, List<String>> notMap,
+            int slop,
+            String highlighter,
+            double minScore,
+            int maxResponses
+    ) {
+        return asyncClient.search(buildAdvancedPhraseRequest(
+                phrase, andMap, orMap, notMap, slop, highlighter, minScore, maxResponses), Record.class);
+    }
+
+    /**
+     * Runs one page of a phrase search. Hits are sorted by score, then by name, which is also the document ID, so
+     * every hit's {@link Hit#sort()} is a unique position to continue from with {@code searchAfter}.
+     *
+     * <p>The first page is read straight from the index, as most searches never ask for a second one. Later pages
+     * are read from a point in time (PIT), so they all see the same documents even while records are added or
+     * removed. PIT searches also sort by {@code _shard_doc}, as Elasticsearch would otherwise add it implicitly.
+     *
+     * @param search      The search to run. Its {@link PhraseSearch#getMaxResponses()} is the page size.
+     * @param pitId       A PIT from {@link #openPointInTimeAsync()}, or from the previous page's response. Null to
+     *                    read the index itself.
+     * @param searchAfter The sort values of the last hit of the previous page, or null for the first page.
+     * @return A future of the {@link SearchResponse}. Its {@link SearchResponse#pitId()} is the PIT to use for the
+     * next page, which may differ from {@code pitId}, and is null if {@code pitId} was.
+     */
+    public CompletableFuture<SearchResponse<Record>> phraseQueryPageAsync(
+            PhraseSearch search,
+            String pitId,
+            List<FieldValue> searchAfter
+    ) {
+        SearchRequest.Builder requestBuilder = new SearchRequest.Builder()
+                .query(buildAdvancedPhraseQuery(search.getPhrase(), search.getAndMap(), search.getOrMap(),
+                        search.getNotMap(), search.getSlop()))
+                .minScore(search.getMinScore())
+                .size(search.getMaxResponses())
+                .sort(so -> so.score(sc -> sc.order(SortOrder.Desc)))
+                .sort(so -> so.field(f -> f.field("name").order(SortOrder.Asc)));
+
+        List<FieldValue> after = searchAfter;
+        if (pitId == null) {
+            requestBuilder.index(MUSIC_INDEX_NAME);
+        } else {
+            // A PIT already names the index, so the request must not
+            requestBuilder
+                    .pit(p -> p.id(pitId).keepAlive(t -> t.time(PIT_KEEP_ALIVE)))
+                    .sort(so -> so.field(f -> f.field(SHARD_DOC_FIELD).order(SortOrder.Asc)));
+            // A first page has no _shard_doc value. Names are unique, so its last hit is the only one with its
+            // score and name, and the largest value continues right after it.
+            if (after != null && after.size() == PAGE_SORT_FIELDS) {
+                after = new ArrayList<>(after);
+                after.add(FieldValue.of(Long.MAX_VALUE));
+            }
+        }
+
+        if (after != null && !after.isEmpty()) {
+            requestBuilder.searchAfter(after);
+        }
+
+        if (search.getSourceFields() != null && !search.getSourceFields().isEmpty()) {
+            requestBuilder.source(buildSourceFilter(search.getSourceFields()));
+        }
+
+        if (search.getHighlighter() != null) {
+            requestBuilder.highlight(buildPhraseHighlight(search.getHighlighter()));
+        }
+
+        return asyncClient.search(requestBuilder.build(), Record.class);
+    }
+
+    /**
+     * Opens a point in time (PIT) of the "music" index, so every page of a paginated search after the first sees the
+     * same documents even while records are added or removed. It is kept alive for {@code PIT_KEEP_ALIVE} after each use.
+     *
+     * @return A future of the PIT id.
+     */
+    public CompletableFuture<String> openPointInTimeAsync() {
+        OpenPointInTimeRequest openRequest = new OpenPointInTimeRequest.Builder()
+                .index(MUSIC_INDEX_NAME)
+                .keepAlive(t -> t.time(PIT_KEEP_ALIVE))
+                .build();
+
+        return asyncClient.openPointInTime(openRequest).thenApply(OpenPointInTimeResponse::id);
+    }
+
+    /**
+     * Closes a point in time (PIT) once its search has no more pages, rather than holding its segments until the
+     * keep alive runs out. Failures are ignored, as the PIT expires on its own anyway.
+     *
+     * @param pitId The PIT to close.
+     */
+    public void closePointInTimeAsync(String pitId) {
+        asyncClient.closePointInTime(c -> c.id(pitId))
+                .exceptionally(ex -> null);
+    }
+
+    /**
+     * Runs many phrase searches against the "music" index in a single {@code _msearch} request, so a batch costs
+     * one round-trip instead of one per search. Like {@link #advancedPhraseQueryAsync}, it never blocks the calling
+     * thread.
+     *
+     * @param searches The searches to run. Each is built exactly as {@link #advancedPhraseQuery} would build it.
+     * @return A future of the {@link MsearchResponse}, whose responses are in the same order as {@code searches}.
+     * A search Elasticsearch rejected has a failure item in its place; the future itself only completes
+     * exceptionally if the request as a whole fails.
+     */
+    public CompletableFuture<MsearchResponse<Record>> multiPhraseQueryAsync(List<PhraseSearch> searches) {
+        List<RequestItem> items = new ArrayList<>(searches.size());
+        for (PhraseSearch search : searches) {
+            MultisearchBody.Builder bodyBuilder = new MultisearchBody.Builder()
+                    .query(buildAdvancedPhraseQuery(search.getPhrase(), search.getAndMap(), search.getOrMap(),
+                            search.getNotMap(), search.getSlop()))
+                    .minScore(search.getMinScore());
+
+            if (search.getMaxResponses() != -1 || search.getPhrase() == null || search.getPhrase().isBlank()) {
+                bodyBuilder.size(search.getMaxResponses());
+            }
+
+            if (search.getHighlighter() != null) {
+                bodyBuilder.highlight(buildPhraseHighlight(search.getHighlighter()));
+            }
+
+            if (search.getSourceFields() != null && !search.getSourceFields().isEmpty()) {
+                bodyBuilder.source(buildSourceFilter(search.getSourceFields()));
+            }
+
+            items.add(new RequestItem.Builder()
+                    .header(h -> h.index(MUSIC_INDEX_NAME))
+                    .body(bodyBuilder.build())
+                    .build());
+        }
+
+        MsearchRequest msearchRequest = new MsearchRequest.Builder()
+                .index(MUSIC_INDEX_NAME)
+                .searches(items)
+                .build();
+
+        return asyncClient.msearch(msearchRequest, Record.class);
+    }
+
+    /**
+     * Builds the request for {@link #advancedPhraseQuery} and {@link #advancedPhraseQueryAsync}. See the former for
+     * the parameters.
+     */
+    private SearchRequest buildAdvancedPhraseRequest(
+            String phrase,
+            Map<String, List<String>> andMap,
+            Map<String, List<String>> orMap,
+            Map<String, List<String>> notMap,
+            int slop,
+            String highlighter,
+            double minScore,
+            int maxResponses
+    ) {
+        SearchRequest.Builder requestBuilder = new SearchRequest.Builder()
+                .index(MUSIC_INDEX_NAME)
+                .query(buildAdvancedPhraseQuery(phrase, andMap, orMap, notMap, slop))
+                .minScore(minScore);
+
+        if (maxResponses != -1 || phrase == null || phrase.isBlank()) {
+            requestBuilder.size(maxResponses);
+        }
+
+        if (highlighter != null) {
+            requestBuilder.highlight(buildPhraseHighlight(highlighter));
+        }
+
+        return requestBuilder.build();
+    }
+
+    /**
+     * Builds the query shared by every phrase search: the phrase on {@code intervals_text}, filtered by the
+     * metadata maps. See {@link #advancedPhraseQuery} for the parameters.
+     */
+    private Query buildAdvancedPhraseQuery(
+            String phrase,
+            Map<String, List<String>> andMap,
+            Map<String, List<String>> orMap,
+            Map<String, List<String>> notMap,
+            int slop
+    ) {
         String metadataField = "mei_metadata";
 
         Query phraseQuery = (phrase != null && !phrase.isBlank())
                 ? new Query.Builder().matchPhrase(new MatchPhraseQuery.Builder()
-                .field(phraseField)
+                .field(PHRASE_FIELD)
                 .query(phrase)
                 .slop(slop)
                 .build()).build()
@@ -253,28 +638,30 @@ public class ElasticProcessor {
             filterBuilder.filter(buildFilterQuery(metadataField, notMap, BoolClauseType.MUST_NOT));
         }
 
-        Query finalQuery = new Query.Builder().bool(new BoolQuery.Builder()
+        return new Query.Builder().bool(new BoolQuery.Builder()
                 .must(phraseQuery)
                 .filter(new Query.Builder().bool(filterBuilder.build()).build())
                 .build()).build();
+    }
 
-        SearchRequest.Builder requestBuilder = new SearchRequest.Builder()
-                .index(MUSIC_INDEX_NAME)
-                .query(finalQuery)
-                .minScore(minScore);
-
-        if (maxResponses != -1 || phrase == null || phrase.isBlank()) {
-            requestBuilder.size(maxResponses);
-        }
-
-        if (highlighter != null) {
-            Highlight highlight = new Highlight.Builder()
-                    .fields(phraseField, new HighlightField.Builder().type(highlighter).build())
-                    .build();
-            requestBuilder.highlight(highlight);
-        }
+    /**
+     * Builds the highlight of the phrase field for the given highlighter type. The field comes back whole rather
+     * than in fragments, so the token position of every match can be read off it.
+     */
+    private Highlight buildPhraseHighlight(String highlighter) {
+        return new Highlight.Builder()
+                .fields(PHRASE_FIELD, new HighlightField.Builder().type(highlighter).numberOfFragments(0).build())
+                .build();
+    }
 
-        return client.search(requestBuilder.build(), Record.class);
+    /**
+     * Builds a {@code _source} filter that only fetches the given fields, so Elasticsearch neither reads nor sends
+     * the rest of each document.
+     */
+    private SourceConfig buildSourceFilter(List<String> sourceFields) {
+        return new SourceConfig.Builder()
+                .filter(f -> f.includes(sourceFields))
+                .build();
     }
 
     /**
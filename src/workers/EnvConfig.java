@@ -0,0 +1,36 @@
+package workers;
+
+/**
+ * Reads the server's settings from the environment, see docker-compose.yml for the ones there are. Every class that
+ * is configured through the environment reads it through here, so a missing or blank variable means the same thing
+ * everywhere.
+ */
+public final class EnvConfig {
+
+    private EnvConfig() {
+    }
+
+    /**
+     * Reads an environment variable, falling back to a default when it is missing or blank.
+     *
+     * @param name         the environment variable name
+     * @param defaultValue the value used when the variable is not set
+     * @return the variable's value, or {@code defaultValue}
+     */
+    public static String getEnvOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+    }
+
+    /**
+     * Reads an integer from the env, falling back to a default when it is missing or blank.
+     *
+     * @param name         the environment variable name
+     * @param defaultValue the value used when the variable is not set
+     * @return the parsed value, or {@code defaultValue}
+     */
+    public static int getIntEnv(String name, int defaultValue) {
+        String value = getEnvOrDefault(name, null);
+        return (value == null) ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -2,12 +2,19 @@ package workers;
 
 import serverCode.HttpServerProxy;
 import serverCode.Requests.ReqAddMusic;
+import serverCode.Requests.ReqAddMusicBatch;
 import serverCode.Responses.ResAddMusic;
+import serverCode.Responses.ResAddMusicBatch;
 import serverCode.Services.BASE_SERVICE;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Indexes MEI files stored in a PostgreSQL database by sending them to an HTTP proxy server.
@@ -27,6 +34,10 @@ public class Indexer {
     private static final String DB_USER = System.getenv("DB_USER");
     private static final String DB_PASSWORD = System.getenv("DB_PASS");
     private static final String POSTGRE_SQL_JDBC_DRIVER_NOT_FOUND = "PostgreSQL JDBC Driver not found.";
+    /**
+     * How many files we send to /addMusicBatch at once
+     */
+    private static final int BATCH_SIZE = 50;
 
     public static void main(String[] args) {
         if (args.length != 2) {
@@ -61,29 +72,52 @@ public class Indexer {
         String sql = "SELECT file_id, file_name, file_content FROM public.\"meiFiles\"";
         try (Connection connection = DriverManager.getConnection(JDBC_URL, DB_USER, DB_PASSWORD);
              Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            List<ReqAddMusic> batch = new ArrayList<>(BATCH_SIZE);
             while (rs.next()) {
                 String fileId = rs.getString("file_id");
                 String fileName = rs.getString("file_name");
                 String fileContent = rs.getString("file_content");
 
                 System.out.println("Processing file: " + fileName);
+                batch.add(new ReqAddMusic(fileName, fileContent, fileId));
 
-                ReqAddMusic request = new ReqAddMusic(fileName, fileContent, fileId);
-                ResAddMusic response = proxy.addMusic(request);
-
-                if (response.isSuccess()) {
-                    System.out.println("Indexed");
-                } else {
-                    System.out.println("Failed");
-                    System.out.println("Reason / Exception: " + response.message);
-                    System.out.println("Elastic: " + response.getElasticResponse());
+                if (batch.size() == BATCH_SIZE) {
+                    sendBatch(proxy, batch);
+                    batch.clear();
                 }
             }
+            if (!batch.isEmpty()) sendBatch(proxy, batch);
         } catch (Exception e) {
             System.out.println("General error in 'processAndIndexFiles: "+e.getMessage());
         }
     }
 
+    /**
+     * Sends one batch of files to be indexed, and prints the outcome of each.
+     *
+     * @param proxy the proxy to the server
+     * @param batch the files to index
+     */
+    private static void sendBatch(HttpServerProxy proxy, List<ReqAddMusic> batch) {
+        ResAddMusicBatch response = proxy.addMusicBatch(new ReqAddMusicBatch(new ArrayList<>(batch)));
+        if (response == null || !response.isSuccess() || response.getResults() == null) {
+            System.out.println("Failed batch of " + batch.size() + " files");
+            if (response != null) System.out.println("Reason / Exception: " + response.message);
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            ResAddMusic result = response.getResults().get(i);
+            if (result.isSuccess()) {
+                System.out.println("Indexed " + batch.get(i).getFileName());
+            } else {
+                System.out.println("Failed " + batch.get(i).getFileName());
+                System.out.println("Reason / Exception: " + result.message);
+                System.out.println("Elastic: " + result.getElasticResponse());
+            }
+        }
+    }
+
     public static void downloadAllFilesToLocalHost() {
         String sql = "SELECT file_id, file_name, file_content FROM public.\"meiFiles\"";
         try (Connection connection = DriverManager.getConnection(JDBC_URL, DB_USER, DB_PASSWORD);
@@ -115,4 +149,29 @@ public class Indexer {
         return null;
     }
 
+    /**
+     * Fetches the content of many files in a single query.
+     *
+     * @param fileNames the names of the files
+     * @return the content of each file found, keyed by its name, or null if the query failed. Names with no file
+     * are left out.
+     */
+    public static Map<String, String> getFilesByNames(Collection<String> fileNames) {
+        String sql = "SELECT file_name, file_content FROM public.\"meiFiles\" WHERE file_name = ANY(?)";
+        try (Connection connection = DriverManager.getConnection(JDBC_URL, DB_USER, DB_PASSWORD);
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("text", fileNames.toArray()));
+            Map<String, String> files = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    files.put(rs.getString("file_name"), rs.getString("file_content"));
+                }
+            }
+            return files;
+        } catch (SQLException e) {
+            System.out.println("SQL error in 'getFilesByNames': "+e.getMessage());
+            return null;
+        }
+    }
+
 }
@@ -0,0 +1,138 @@
+package workers;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds every occurrence of a set of interval patterns in a piece's intervals in a single pass, with an Aho-Corasick
+ * automaton. The automaton is built once per set of patterns, and a search over {@code n} intervals takes {@code n}
+ * steps plus one per match, however many patterns there are.
+ * <p>
+ * Intervals are matched as bytes, as they are everywhere highlights are read. The automaton is a full transition
+ * table over all 256 byte values, so each step is a single array lookup.
+ * </p>
+ */
+public class IntervalPatternMatcher {
+    private static final int ALPHABET = 256;
+
+    /**
+     * Called once per occurrence found
+     */
+    @FunctionalInterface
+    public interface MatchConsumer {
+        /**
+         * @param pattern the index of the pattern found, in the order the patterns were given
+         * @param start   the index of the interval the occurrence starts at
+         */
+        void accept(int pattern, int start);
+    }
+
+    private final int[] patternLengths;
+    /**
+     * The next state from each state on each byte, indexed {@code state * ALPHABET + (byte & 0xFF)}
+     */
+    private final int[] transitions;
+    /**
+     * The pattern that ends at each state, or -1 if none does. A pattern given more than once is only found once.
+     */
+    private final int[] terminalPattern;
+    /**
+     * The nearest state down each state's failure chain that ends a pattern, or -1 if none does
+     */
+    private final int[] outputLink;
+
+    /**
+     * Builds the automaton for a set of patterns. Empty patterns are never found.
+     *
+     * @param patterns the interval patterns to search for
+     */
+    public IntervalPatternMatcher(List<byte[]> patterns) {
+        patternLengths = new int[patterns.size()];
+        int maxStates = 1;
+        for (int i = 0; i < patterns.size(); i++) {
+            patternLengths[i] = patterns.get(i).length;
+            maxStates += patternLengths[i];
+        }
+
+        int[] table = new int[maxStates * ALPHABET];
+        Arrays.fill(table, -1);
+        int[] terminal = new int[maxStates];
+        Arrays.fill(terminal, -1);
+
+        // Build the trie
+        int stateCount = 1;
+        for (int i = 0; i < patterns.size(); i++) {
+            byte[] pattern = patterns.get(i);
+            if (pattern.length == 0) continue;
+            int state = 0;
+            for (byte b : pattern) {
+                int slot = state * ALPHABET + (b & 0xFF);
+                if (table[slot] < 0) table[slot] = stateCount++;
+                state = table[slot];
+            }
+            if (terminal[state] < 0) terminal[state] = i;
+        }
+
+        // Fill in the failure transitions breadth first, so each state's failure is done before its children need it
+        int[] failure = new int[stateCount];
+        int[] links = new int[stateCount];
+        Arrays.fill(links, -1);
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int child = table[symbol];
+            if (child < 0) {
+                table[symbol] = 0;
+            } else {
+                failure[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int fail = failure[state];
+            links[state] = (terminal[fail] >= 0) ? fail : links[fail];
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int slot = state * ALPHABET + symbol;
+                int child = table[slot];
+                if (child < 0) {
+                    table[slot] = table[fail * ALPHABET + symbol];
+                } else {
+                    failure[child] = table[fail * ALPHABET + symbol];
+                    queue[tail++] = child;
+                }
+            }
+        }
+
+        transitions = Arrays.copyOf(table, stateCount * ALPHABET);
+        terminalPattern = Arrays.copyOf(terminal, stateCount);
+        outputLink = links;
+    }
+
+    /**
+     * @return the length of the given pattern
+     */
+    public int patternLength(int pattern) {
+        return patternLengths[pattern];
+    }
+
+    /**
+     * Finds every occurrence of every pattern, overlapping ones included, in order of where they end
+     *
+     * @param intervals the intervals to search
+     * @param consumer  given each occurrence found
+     */
+    public void findAll(byte[] intervals, MatchConsumer consumer) {
+        int state = 0;
+        for (int i = 0; i < intervals.length; i++) {
+            state = transitions[state * ALPHABET + (intervals[i] & 0xFF)];
+            int output = (terminalPattern[state] >= 0) ? state : outputLink[state];
+            while (output >= 0) {
+                int pattern = terminalPattern[output];
+                consumer.accept(pattern, i - patternLengths[pattern] + 1);
+                output = outputLink[output];
+            }
+        }
+    }
+}
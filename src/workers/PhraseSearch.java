@@ -0,0 +1,85 @@
+package workers;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parameters of one phrase search, as taken by {@link ElasticProcessor#advancedPhraseQuery}. Used to hand many
+ * searches to {@link ElasticProcessor#multiPhraseQueryAsync} at once.
+ */
+public class PhraseSearch {
+    private final String phrase;
+    private final Map<String, List<String>> andMap;
+    private final Map<String, List<String>> orMap;
+    private final Map<String, List<String>> notMap;
+    private final int slop;
+    private final String highlighter;
+    private final double minScore;
+    private final int maxResponses;
+    /**
+     * The {@code _source} fields to fetch, e.g. {@code "name"} or {@code "mei_metadata.titles"}. Null fetches all.
+     */
+    private final List<String> sourceFields;
+
+    /**
+     * See {@link ElasticProcessor#advancedPhraseQuery} for the meaning of each parameter but {@code sourceFields},
+     * which limits the {@code _source} of each hit to the given fields, or fetches it all if null or empty.
+     */
+    public PhraseSearch(
+            String phrase,
+            Map<String, List<String>> andMap,
+            Map<String, List<String>> orMap,
+            Map<String, List<String>> notMap,
+            int slop,
+            String highlighter,
+            double minScore,
+            int maxResponses,
+            List<String> sourceFields
+    ) {
+        this.phrase = phrase;
+        this.andMap = andMap;
+        this.orMap = orMap;
+        this.notMap = notMap;
+        this.slop = slop;
+        this.highlighter = highlighter;
+        this.minScore = minScore;
+        this.maxResponses = maxResponses;
+        this.sourceFields = sourceFields;
+    }
+
+    public String getPhrase() {
+        return phrase;
+    }
+
+    public Map<String, List<String>> getAndMap() {
+        return andMap;
+    }
+
+    public Map<String, List<String>> getOrMap() {
+        return orMap;
+    }
+
+    public Map<String, List<String>> getNotMap() {
+        return notMap;
+    }
+
+    public int getSlop() {
+        return slop;
+    }
+
+    public String getHighlighter() {
+        return highlighter;
+    }
+
+    public double getMinScore() {
+        return minScore;
+    }
+
+    public int getMaxResponses() {
+        return maxResponses;
+    }
+
+    public List<String> getSourceFields() {
+        return sourceFields;
+    }
+}
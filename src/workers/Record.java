@@ -37,6 +37,21 @@ public class Record {
     private int[] measure_map_as_array;
     private String file_id;
     private HashMap<String, String> mei_metadata;
+    /**
+     * The {@code [start, end)} char offsets of each measure of the first section in the stored file, flattened e.g.
+     * {@code [120, 480, 481, 860, ...]}. Stored, not searched, so partial sheet music can be cut out without a parse.
+     */
+    private int[] measure_offsets;
+    /**
+     * The {@code [start, end, measuresBefore]} of each key signature of the first section in the stored file,
+     * flattened, where {@code measuresBefore} is how many measures start before it
+     */
+    private int[] keysig_offsets;
+    /**
+     * The {@code [start, end)} ranges of the stored file that make up its skeleton: the root element with the first
+     * section emptied and every other section left out
+     */
+    private int[] skeleton_ranges;
 
     /**
      * Constructs a Record with both array and textual interval and measure mappings.
@@ -71,7 +86,7 @@ public class Record {
      */
     public static String convertIntArrayToString(int[] array) {
         if (array == null || array.length == 0) return "";
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(array.length * 4); // Most values are one or two digits, a sign, and a space
         for (int value : array) {
             sb.append(value).append(" ");
         }
@@ -135,6 +150,30 @@ public class Record {
         this.mei_metadata = mei_metadata;
     }
 
+    public int[] getMeasure_offsets() {
+        return measure_offsets;
+    }
+
+    public void setMeasure_offsets(int[] measure_offsets) {
+        this.measure_offsets = measure_offsets;
+    }
+
+    public int[] getKeysig_offsets() {
+        return keysig_offsets;
+    }
+
+    public void setKeysig_offsets(int[] keysig_offsets) {
+        this.keysig_offsets = keysig_offsets;
+    }
+
+    public int[] getSkeleton_ranges() {
+        return skeleton_ranges;
+    }
+
+    public void setSkeleton_ranges(int[] skeleton_ranges) {
+        this.skeleton_ranges = skeleton_ranges;
+    }
+
     @Override
     public String toString() {
         return "Record{" +
@@ -145,6 +184,9 @@ public class Record {
                 ", measure_map_as_array=" + Arrays.toString(measure_map_as_array) +
                 ", file_id='" + file_id + '\'' +
                 ", mei_metadata=" + mei_metadata +
+                ", measure_offsets=" + Arrays.toString(measure_offsets) +
+                ", keysig_offsets=" + Arrays.toString(keysig_offsets) +
+                ", skeleton_ranges=" + Arrays.toString(skeleton_ranges) +
                 '}';
     }
 }
@@ -0,0 +1,120 @@
+package workers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small in-process LRU cache whose entries also expire after a fixed time to live. It is bounded by entry count,
+ * and every method is thread safe.
+ * <p>
+ * Cached search results go stale as soon as the index changes, so the cache keeps a generation number.
+ * {@link #invalidate()} bumps it and drops every entry, and {@link #put} refuses a value computed under an older
+ * generation, so a search that was already running when a record was added can't cache its outdated result.
+ * </p>
+ *
+ * @param <K> the key type, which must have a proper {@code equals} and {@code hashCode}
+ * @param <V> the value type
+ */
+public class SearchCache<K, V> {
+    private final int maxEntries;
+    private final long ttlNanos;
+    /**
+     * In access order, so the eldest entry is the least recently used
+     */
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries the most entries kept at once. 0 disables the cache.
+     * @param ttlMillis  how long an entry stays valid after it is put
+     */
+    public SearchCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the cached value, or null if there is none or it expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.nanoTime() - entry.createdNanos > ttlNanos) {
+            entries.remove(key);
+            evictions.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Caches a value, evicting the least recently used entries if the cache is full.
+     *
+     * @param key        the key to cache under
+     * @param value      the value to cache
+     * @param generation the {@link #generation()} read before the value was computed. If the cache has been
+     *                   invalidated since, the value is dropped.
+     */
+    public synchronized void put(K key, V value, long generation) {
+        if (maxEntries <= 0 || generation != this.generation) return;
+        entries.put(key, new Entry<>(value, System.nanoTime()));
+
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * @return the current generation, to pass to {@link #put} once the value is computed
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Drops every entry and bumps the generation. Called whenever the data behind the cached values changes.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return how many entries were dropped for being expired or least recently used. Entries dropped by
+     * {@link #invalidate()} are not counted.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private record Entry<V>(V value, long createdNanos) {
+    }
+}
@@ -0,0 +1,95 @@
+package workers;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Where a paginated search left off: the point in time (PIT) it reads from, and the sort values of its last hit to
+ * continue {@code search_after}. A first page is read without a PIT, so its cursor has none, and the PIT is opened
+ * when the cursor is followed. Clients only ever see it as the opaque string of {@link #encode()}.
+ * <p>
+ * The encoded form is the URL-safe base64 of the PIT id, or an empty line if there is none, followed by one line per
+ * sort value, each tagged with its type so it decodes back to the exact {@link FieldValue} Elasticsearch returned.
+ * </p>
+ */
+public class SearchCursor {
+    private final String pitId;
+    private final List<FieldValue> searchAfter;
+
+    public SearchCursor(String pitId, List<FieldValue> searchAfter) {
+        this.pitId = pitId;
+        this.searchAfter = searchAfter;
+    }
+
+    /**
+     * @return the PIT to continue reading from, or null if one has to be opened
+     */
+    public String getPitId() {
+        return pitId;
+    }
+
+    public List<FieldValue> getSearchAfter() {
+        return searchAfter;
+    }
+
+    /**
+     * @return the opaque string handed to clients
+     * @throws IllegalArgumentException if a sort value is of a type we can't encode
+     */
+    public String encode() {
+        StringBuilder sb = new StringBuilder((pitId == null) ? "" : pitId);
+        for (FieldValue value : searchAfter) {
+            sb.append('\n');
+            if (value.isDouble()) {
+                sb.append("d:").append(value.doubleValue());
+            } else if (value.isLong()) {
+                sb.append("l:").append(value.longValue());
+            } else if (value.isBoolean()) {
+                sb.append("b:").append(value.booleanValue());
+            } else if (value.isString()) {
+                // Strings may hold newlines, so they get their own layer of base64
+                sb.append("s:").append(Base64.getUrlEncoder().encodeToString(
+                        value.stringValue().getBytes(StandardCharsets.UTF_8)));
+            } else if (value.isNull()) {
+                sb.append("n:");
+            } else {
+                throw new IllegalArgumentException("Can't encode sort value of kind " + value._kind());
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reverses {@link #encode()}.
+     *
+     * @param cursor a string from {@link #encode()}
+     * @return the cursor it stands for
+     * @throws IllegalArgumentException if the string is not a cursor we made
+     */
+    public static SearchCursor decode(String cursor) {
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] lines = decoded.split("\n", -1);
+        // Without a PIT, the sort values are all there is to continue from
+        if (lines[0].isEmpty() && lines.length == 1) throw new IllegalArgumentException("Invalid cursor");
+
+        List<FieldValue> searchAfter = new ArrayList<>(lines.length - 1);
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.length() < 2 || line.charAt(1) != ':') throw new IllegalArgumentException("Invalid cursor");
+            String value = line.substring(2);
+            searchAfter.add(switch (line.charAt(0)) {
+                case 'd' -> FieldValue.of(Double.parseDouble(value));
+                case 'l' -> FieldValue.of(Long.parseLong(value));
+                case 'b' -> FieldValue.of(Boolean.parseBoolean(value));
+                case 's' -> FieldValue.of(new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8));
+                case 'n' -> FieldValue.NULL;
+                default -> throw new IllegalArgumentException("Invalid cursor");
+            });
+        }
+        return new SearchCursor(lines[0].isEmpty() ? null : lines[0], searchAfter);
+    }
+}
@@ -0,0 +1,100 @@
+package workers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Identifies a phrase search by what it means rather than how it was written, so two requests that would run the
+ * same Elasticsearch query get equal keys. The interval string has its whitespace normalized, and the filter maps
+ * are sorted by field and value, lowercased the way {@link ElasticProcessor#buildTermOrPhraseQuery} lowercases
+ * them, and stripped of the blank values it skips.
+ */
+public final class SearchKey {
+    private final String intervals;
+    private final Map<String, List<String>> andMap;
+    private final Map<String, List<String>> orMap;
+    private final Map<String, List<String>> notMap;
+    private final int pageSize;
+    private final List<String> fields;
+    private final int hash;
+
+    public SearchKey(
+            String intervals,
+            Map<String, List<String>> andMap,
+            Map<String, List<String>> orMap,
+            Map<String, List<String>> notMap,
+            int pageSize,
+            List<String> fields
+    ) {
+        this.intervals = (intervals == null) ? "" : intervals.strip().replaceAll("\\s+", " ");
+        this.andMap = canonicalize(andMap);
+        this.orMap = canonicalize(orMap);
+        this.notMap = canonicalize(notMap);
+        this.pageSize = pageSize;
+        this.fields = (fields == null || fields.isEmpty()) ? null : sorted(fields);
+        this.hash = Objects.hash(this.intervals, this.andMap, this.orMap, this.notMap, this.pageSize, this.fields);
+    }
+
+    /**
+     * Copies a filter map into a sorted map of sorted, lowercased, non-blank values. Fields left with no values are
+     * dropped, as they filter nothing.
+     */
+    private static Map<String, List<String>> canonicalize(Map<String, List<String>> map) {
+        TreeMap<String, List<String>> canonical = new TreeMap<>();
+        if (map == null) return canonical;
+
+        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+            if (entry.getValue() == null) continue;
+            List<String> values = new ArrayList<>();
+            for (String value : entry.getValue()) {
+                if (value == null || value.isBlank()) continue;
+                values.add(value.strip().toLowerCase());
+            }
+            if (!values.isEmpty()) {
+                Collections.sort(values);
+                canonical.put(entry.getKey(), values);
+            }
+        }
+        return canonical;
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SearchKey other)) return false;
+        return hash == other.hash
+                && pageSize == other.pageSize
+                && intervals.equals(other.intervals)
+                && andMap.equals(other.andMap)
+                && orMap.equals(other.orMap)
+                && notMap.equals(other.notMap)
+                && Objects.equals(fields, other.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchKey{" +
+                "intervals='" + intervals + '\'' +
+                ", andMap=" + andMap +
+                ", orMap=" + orMap +
+                ", notMap=" + notMap +
+                ", pageSize=" + pageSize +
+                ", fields=" + fields +
+                '}';
+    }
+}
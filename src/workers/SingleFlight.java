@@ -0,0 +1,66 @@
+package workers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent work. The first caller for a key (the leader) starts the work; every caller for the
+ * same key that arrives while it is still running gets the leader's future instead of starting its own. Once the work
+ * completes the key is forgotten, so later callers start fresh (and usually find the result in a cache by then).
+ *
+ * @param <K> the key type, which must have a proper {@code equals} and {@code hashCode}
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Runs {@code work} for this key, unless it is already running, in which case its future is shared.
+     *
+     * @param key  the key identifying the work
+     * @param work starts the work, on the calling thread. Only called by the leader.
+     * @return a future of the work's result, shared by every caller with this key while it runs
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> work) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        try {
+            work.get().whenComplete((value, ex) -> {
+                // Forget the key first, so nobody joins a future that is already done
+                inFlight.remove(key, promise);
+                if (ex != null) {
+                    promise.completeExceptionally(ex);
+                } else {
+                    promise.complete(value);
+                }
+            });
+        } catch (Throwable ex) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(ex);
+        }
+        return promise;
+    }
+
+    /**
+     * Stops sharing the work running now with later callers, e.g. because its result is known to be outdated.
+     * Callers already waiting on it still get it.
+     */
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    /**
+     * @return how many callers were handed another caller's future instead of starting the work
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}